@@ -9,4 +9,6 @@ public class Document {
 	
 	public String text;
 	
+	public String label;
+	
 }
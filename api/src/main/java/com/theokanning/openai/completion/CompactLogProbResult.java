@@ -0,0 +1,297 @@
+package com.theokanning.openai.completion;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link LogProbResult} that stores its values in primitive arrays instead of lists of boxed values and maps.
+ *
+ * The top logprobs of all tokens are kept in two flat arrays, with the alternatives of token i
+ * stored from {@code topStarts[i]} up to {@code topStarts[i + 1]}.
+ * The list getters of {@link LogProbResult} still work, they return read-only views that box values on access.
+ * A missing log probability, like the one of the first token when the prompt is echoed, is stored as {@link Double#NaN}.
+ * <p>
+ * The arrays are never modified. A list set through the inherited setters replaces that field's compact values,
+ * and the accessors below read it instead.
+ */
+public class CompactLogProbResult extends LogProbResult {
+
+    private final String[] tokenArray;
+
+    private final double[] logprobs;
+
+    private final int[] textOffsets;
+
+    private final int[] topStarts;
+
+    private final String[] topTokens;
+
+    private final double[] topValues;
+
+    /**
+     * Any of the arrays may be null if the api didn't return that field.
+     *
+     * @param topStarts   for each token the index of its first alternative in topTokens and topValues, followed by the total count
+     * @param topTokens   the alternative tokens of all positions, one after the other
+     * @param topValues   the log probabilities of topTokens
+     */
+    public CompactLogProbResult(String[] tokens, double[] logprobs, int[] textOffsets, int[] topStarts, String[] topTokens, double[] topValues) {
+        this.tokenArray = tokens;
+        this.logprobs = logprobs;
+        this.textOffsets = textOffsets;
+        this.topStarts = topStarts;
+        this.topTokens = topTokens;
+        this.topValues = topValues;
+    }
+
+    /**
+     * The number of tokens
+     */
+    public int size() {
+        List<String> replaced = super.getTokens();
+        if (replaced != null) {
+            return replaced.size();
+        }
+        if (tokenArray != null) {
+            return tokenArray.length;
+        }
+        return logprobCount();
+    }
+
+    public String tokenAt(int index) {
+        List<String> replaced = super.getTokens();
+        return replaced != null ? replaced.get(index) : tokenArray[index];
+    }
+
+    /**
+     * The log probability of the token at the given index, or NaN if it has none
+     */
+    public double logprobAt(int index) {
+        List<Double> replaced = super.getTokenLogprobs();
+        if (replaced != null) {
+            Double value = replaced.get(index);
+            return value != null ? value : Double.NaN;
+        }
+        return logprobs[index];
+    }
+
+    public int textOffsetAt(int index) {
+        List<Integer> replaced = super.getTextOffset();
+        return replaced != null ? replaced.get(index) : textOffsets[index];
+    }
+
+    /**
+     * The number of alternatives returned for the token at the given index
+     */
+    public int topCount(int index) {
+        List<Map<String, Double>> replaced = super.getTopLogprobs();
+        if (replaced != null) {
+            Map<String, Double> top = replaced.get(index);
+            return top != null ? top.size() : 0;
+        }
+        return topStarts == null ? 0 : topStarts[index + 1] - topStarts[index];
+    }
+
+    /**
+     * The alternative with the given rank of the token at the given index, in the order the api returned them
+     */
+    public String topTokenAt(int index, int rank) {
+        if (super.getTopLogprobs() != null) {
+            return replacedTop(index, rank).getKey();
+        }
+        return topTokens[topIndex(index, rank)];
+    }
+
+    public double topLogprobAt(int index, int rank) {
+        if (super.getTopLogprobs() != null) {
+            return replacedTop(index, rank).getValue();
+        }
+        return topValues[topIndex(index, rank)];
+    }
+
+    /**
+     * The backing array of token log probabilities, do not modify it.
+     * If the log probabilities were replaced through the setter, a copy of them.
+     */
+    public double[] tokenLogprobArray() {
+        if (super.getTokenLogprobs() == null) {
+            return logprobs;
+        }
+        double[] copy = new double[logprobCount()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = logprobAt(i);
+        }
+        return copy;
+    }
+
+    /**
+     * The backing array of text offsets, do not modify it.
+     * If the offsets were replaced through the setter, a copy of them.
+     */
+    public int[] textOffsetArray() {
+        List<Integer> replaced = super.getTextOffset();
+        if (replaced == null) {
+            return textOffsets;
+        }
+        int[] copy = new int[replaced.size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = replaced.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * The sum of the token log probabilities, which is the log probability of the whole text.
+     * Tokens without a log probability are skipped.
+     */
+    public double sumLogprobs() {
+        double sum = 0;
+        for (int i = 0; i < logprobCount(); i++) {
+            double logprob = logprobAt(i);
+            if (!Double.isNaN(logprob)) {
+                sum += logprob;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The mean log probability per token, or NaN if no token has a log probability
+     */
+    public double meanLogprob() {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < logprobCount(); i++) {
+            double logprob = logprobAt(i);
+            if (!Double.isNaN(logprob)) {
+                sum += logprob;
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * The per-token perplexity, e^(-mean log probability). Lower means the text was more likely.
+     */
+    public double perplexity() {
+        return Math.exp(-meanLogprob());
+    }
+
+    @Override
+    public List<String> getTokens() {
+        List<String> replaced = super.getTokens();
+        if (replaced != null) {
+            return replaced;
+        }
+        return tokenArray == null ? null : Collections.unmodifiableList(Arrays.asList(tokenArray));
+    }
+
+    @Override
+    public List<Double> getTokenLogprobs() {
+        List<Double> replaced = super.getTokenLogprobs();
+        if (replaced != null) {
+            return replaced;
+        }
+        if (logprobs == null) {
+            return null;
+        }
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                double value = logprobs[index];
+                return Double.isNaN(value) ? null : value;
+            }
+
+            @Override
+            public int size() {
+                return logprobs.length;
+            }
+        };
+    }
+
+    /**
+     * Builds each map when it is accessed. Positions without alternatives are null.
+     */
+    @Override
+    public List<Map<String, Double>> getTopLogprobs() {
+        List<Map<String, Double>> replaced = super.getTopLogprobs();
+        if (replaced != null) {
+            return replaced;
+        }
+        if (topStarts == null) {
+            return null;
+        }
+        return new AbstractList<Map<String, Double>>() {
+            @Override
+            public Map<String, Double> get(int index) {
+                if (topCount(index) == 0) {
+                    return null;
+                }
+                Map<String, Double> top = new LinkedHashMap<>();
+                for (int i = topStarts[index]; i < topStarts[index + 1]; i++) {
+                    top.put(topTokens[i], topValues[i]);
+                }
+                return top;
+            }
+
+            @Override
+            public int size() {
+                return topStarts.length - 1;
+            }
+        };
+    }
+
+    @Override
+    public List<Integer> getTextOffset() {
+        List<Integer> replaced = super.getTextOffset();
+        if (replaced != null) {
+            return replaced;
+        }
+        if (textOffsets == null) {
+            return null;
+        }
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return textOffsets[index];
+            }
+
+            @Override
+            public int size() {
+                return textOffsets.length;
+            }
+        };
+    }
+
+    private int logprobCount() {
+        List<Double> replaced = super.getTokenLogprobs();
+        if (replaced != null) {
+            return replaced.size();
+        }
+        return logprobs == null ? 0 : logprobs.length;
+    }
+
+    private Map.Entry<String, Double> replacedTop(int index, int rank) {
+        if (rank < 0 || rank >= topCount(index)) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + topCount(index) + " alternatives at token " + index);
+        }
+        Iterator<Map.Entry<String, Double>> alternatives = super.getTopLogprobs().get(index).entrySet().iterator();
+        for (int i = 0; i < rank; i++) {
+            alternatives.next();
+        }
+        return alternatives.next();
+    }
+
+    private int topIndex(int index, int rank) {
+        if (rank < 0 || rank >= topCount(index)) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + topCount(index) + " alternatives at token " + index);
+        }
+        return topStarts[index] + rank;
+    }
+}
@@ -10,7 +10,7 @@ import java.util.Map;
  *
  * @see <a href="https://beta.openai.com/docs/api-reference/completions/create">Online Docs</a>
  */
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -158,4 +158,15 @@ public class CompletionRequest {
 	@Singular("logitBias")
 	Map<String, Integer> logitBias;
 	
+	/**
+	 * <p>Whether to stream back partial progress. If set, tokens will be sent as data-only server-sent events as they become available, with the stream terminated by a <code>data: [DONE]</code> message.</p>
+	 * <p>Use {@code OpenAiService#streamCompletion} rather than setting this directly, the regular completion call cannot parse a streamed response.</p>
+	 * <p>
+	 * <code>Defaults to false</code>
+	 * <p>
+	 *
+	 * @see <a href="https://beta.openai.com/docs/api-reference/completions/create#completions/create-stream">Online Docs</a>
+	 */
+	Boolean stream;
+	
 }
@@ -0,0 +1,41 @@
+package com.theokanning.openai.files;
+
+import lombok.*;
+
+/**
+ * A labeled example in a file used for {@link Purpose#CLASSIFICATION}.
+ *
+ * @see <a href="https://beta.openai.com/docs/guides/classifications">Classification guide</a>
+ */
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ClassificationRecord implements DatasetRecord {
+	
+	/**
+	 * The text of the example.
+	 */
+	String text;
+	
+	/**
+	 * The label of the example.
+	 */
+	String label;
+	
+	/**
+	 * Optional metadata, returned with the selected examples but not used for classification.
+	 */
+	String metadata;
+	
+	@Override
+	public void validate() {
+		if (text == null || text.isEmpty()) {
+			throw new IllegalArgumentException("Example text must not be empty");
+		}
+		if (label == null || label.isEmpty()) {
+			throw new IllegalArgumentException("Example label must not be empty");
+		}
+	}
+	
+}
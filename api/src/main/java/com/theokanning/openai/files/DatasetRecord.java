@@ -0,0 +1,15 @@
+package com.theokanning.openai.files;
+
+/**
+ * A line of a JSONL file uploaded for one of the file {@link Purpose}s.
+ */
+public interface DatasetRecord {
+	
+	/**
+	 * Checks that the required fields are set.
+	 *
+	 * @throws IllegalArgumentException if the record would be rejected by the api
+	 */
+	void validate();
+	
+}
@@ -0,0 +1,33 @@
+package com.theokanning.openai.files;
+
+import lombok.*;
+
+/**
+ * A document in a file used for {@link Purpose#SEARCH} or {@link Purpose#ANSWERS}.
+ *
+ * @see <a href="https://beta.openai.com/docs/guides/search">Search guide</a>
+ */
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class DocumentRecord implements DatasetRecord {
+	
+	/**
+	 * The text of the document.
+	 */
+	String text;
+	
+	/**
+	 * Optional metadata, returned with search results and answers but not used for ranking.
+	 */
+	String metadata;
+	
+	@Override
+	public void validate() {
+		if (text == null || text.isEmpty()) {
+			throw new IllegalArgumentException("Document text must not be empty");
+		}
+	}
+	
+}
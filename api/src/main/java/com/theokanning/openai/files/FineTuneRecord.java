@@ -0,0 +1,36 @@
+package com.theokanning.openai.files;
+
+import lombok.*;
+
+/**
+ * A training example in a file used for {@link Purpose#FINE_TUNE}.
+ *
+ * @see <a href="https://beta.openai.com/docs/guides/fine-tuning">Fine-tuning guide</a>
+ */
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class FineTuneRecord implements DatasetRecord {
+	
+	/**
+	 * The prompt, which may be empty.
+	 */
+	String prompt;
+	
+	/**
+	 * The ideal completion of the prompt.
+	 */
+	String completion;
+	
+	@Override
+	public void validate() {
+		if (prompt == null) {
+			throw new IllegalArgumentException("Prompt must not be null, use an empty string instead");
+		}
+		if (completion == null || completion.isEmpty()) {
+			throw new IllegalArgumentException("Completion must not be empty");
+		}
+	}
+	
+}
@@ -1,5 +1,8 @@
 package com.theokanning.openai.files;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
 /**
  * The different purposes a file can have.
  * <br>
@@ -7,6 +10,7 @@ package com.theokanning.openai.files;
  *     <li>{@link #SEARCH}</li>
  *     <li>{@link #ANSWERS}</li>
  *     <li>{@link #CLASSIFICATION}</li>
+ *     <li>{@link #FINE_TUNE}</li>
  * </ul>
  */
 public enum Purpose {
@@ -21,14 +25,33 @@ public enum Purpose {
 	/**
 	 * Files used for classification.
 	 */
-	CLASSIFICATION("classification");
+	CLASSIFICATION("classification"),
+	/**
+	 * Files used for fine-tuning.
+	 */
+	FINE_TUNE("fine-tune");
 	
+	@JsonValue
 	public String name;
 	
 	Purpose(String s) {
 		name = s;
 	}
 	
+	/**
+	 * @param value the api name of the purpose, like {@code fine-tune}, or the name of the constant, in any case
+	 * @throws IllegalArgumentException if no purpose has that name
+	 */
+	@JsonCreator
+	public static Purpose fromName(String value) {
+		for (Purpose purpose : values()) {
+			if (purpose.name.equalsIgnoreCase(value) || purpose.name().equalsIgnoreCase(value)) {
+				return purpose;
+			}
+		}
+		throw new IllegalArgumentException("Unknown purpose: " + value);
+	}
+	
 	@Override
 	public String toString() {
 		return name;
@@ -0,0 +1,34 @@
+package com.theokanning.openai.tokenizer;
+
+/**
+ * Thrown when a request uses more tokens than the engine allows, before it is sent.
+ */
+public class TokenLimitExceededException extends IllegalArgumentException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final int tokens;
+	
+	private final int limit;
+	
+	public TokenLimitExceededException(String message, int tokens, int limit) {
+		super(message);
+		this.tokens = tokens;
+		this.limit = limit;
+	}
+	
+	/**
+	 * The number of tokens the request would use.
+	 */
+	public int getTokens() {
+		return tokens;
+	}
+	
+	/**
+	 * The number of tokens allowed.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+	
+}
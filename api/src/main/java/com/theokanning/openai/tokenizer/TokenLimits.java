@@ -0,0 +1,84 @@
+package com.theokanning.openai.tokenizer;
+
+import com.theokanning.openai.completion.CompletionRequest;
+import com.theokanning.openai.search.SearchRequest;
+
+import java.util.List;
+
+/**
+ * Checks requests against the engines' token limits locally, so that oversized requests fail without a round trip.
+ * Tokens are counted with {@link Tokenizer#gpt3()}.
+ */
+public final class TokenLimits {
+	
+	/**
+	 * The number of tokens shared between prompt and completion, see {@link CompletionRequest#getMaxTokens()}.
+	 */
+	public static final int DEFAULT_CONTEXT_LENGTH = 2048;
+	
+	/**
+	 * The maximum search document length, including the query, see {@link SearchRequest#getDocuments()}.
+	 */
+	public static final int SEARCH_DOCUMENT_LIMIT = 2034;
+	
+	/**
+	 * The api's default for {@code max_tokens}.
+	 */
+	static final int DEFAULT_MAX_TOKENS = 16;
+	
+	private TokenLimits() {
+	}
+	
+	/**
+	 * @return the most tokens any single prompt of the request can use, counting the prompt and {@code maxTokens}
+	 */
+	public static int completionTokens(CompletionRequest request) {
+		int maxTokens = request.getMaxTokens() != null ? request.getMaxTokens() : DEFAULT_MAX_TOKENS;
+		List<String> prompts = request.getPrompt();
+		if (prompts == null || prompts.isEmpty()) {
+			return maxTokens + 1;
+		}
+		int longestPrompt = 0;
+		for (String prompt : prompts) {
+			longestPrompt = Math.max(longestPrompt, Tokenizer.gpt3().countTokens(prompt));
+		}
+		return longestPrompt + maxTokens;
+	}
+	
+	/**
+	 * @throws TokenLimitExceededException if a prompt plus {@code maxTokens} exceeds {@link #DEFAULT_CONTEXT_LENGTH}
+	 */
+	public static void checkCompletion(CompletionRequest request) {
+		checkCompletion(request, DEFAULT_CONTEXT_LENGTH);
+	}
+	
+	/**
+	 * @param contextLength the number of tokens the engine allows
+	 * @throws TokenLimitExceededException if a prompt plus {@code maxTokens} exceeds the context length
+	 */
+	public static void checkCompletion(CompletionRequest request, int contextLength) {
+		int tokens = completionTokens(request);
+		if (tokens > contextLength) {
+			throw new TokenLimitExceededException("Prompt and max tokens need " + tokens + " tokens, but the engine allows "
+					+ contextLength, tokens, contextLength);
+		}
+	}
+	
+	/**
+	 * @throws TokenLimitExceededException if a document is longer than {@link #SEARCH_DOCUMENT_LIMIT} minus the query length
+	 */
+	public static void checkSearch(SearchRequest request) {
+		if (request.getDocuments() == null) {
+			return;
+		}
+		int queryTokens = Tokenizer.gpt3().countTokens(request.getQuery());
+		for (int i = 0; i < request.getDocuments().size(); i++) {
+			int tokens = queryTokens + Tokenizer.gpt3().countTokens(request.getDocuments().get(i));
+			if (tokens > SEARCH_DOCUMENT_LIMIT) {
+				throw new TokenLimitExceededException("Document " + i + " and the query need " + tokens
+						+ " tokens, but search allows " + SEARCH_DOCUMENT_LIMIT, tokens, SEARCH_DOCUMENT_LIMIT);
+			}
+		}
+	}
+	
+}
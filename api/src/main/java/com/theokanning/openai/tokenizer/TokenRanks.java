@@ -0,0 +1,82 @@
+package com.theokanning.openai.tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash table from byte sequences to token ids, which can be queried with a slice of a larger array
+ * so that lookups during encoding don't allocate.
+ */
+final class TokenRanks {
+	
+	private final byte[][] tokens;
+	
+	private final int[] table;
+	
+	private final int mask;
+	
+	/**
+	 * @param tokens the bytes of each token, indexed by token id
+	 */
+	TokenRanks(byte[][] tokens) {
+		this.tokens = tokens;
+		int capacity = Integer.highestOneBit(Math.max(tokens.length, 1) * 2) << 1;
+		this.table = new int[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(table, -1);
+		for (int id = 0; id < tokens.length; id++) {
+			byte[] token = tokens[id];
+			if (token == null) {
+				continue;
+			}
+			int slot = hash(token, 0, token.length) & mask;
+			while (table[slot] != -1) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id;
+		}
+	}
+	
+	/**
+	 * @return the id of the token with exactly the given bytes, or -1 if there is none
+	 */
+	int get(byte[] bytes, int offset, int length) {
+		int slot = hash(bytes, offset, length) & mask;
+		int id;
+		while ((id = table[slot]) != -1) {
+			if (equals(tokens[id], bytes, offset, length)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	byte[] bytes(int id) {
+		return tokens[id];
+	}
+	
+	int size() {
+		return tokens.length;
+	}
+	
+	private static int hash(byte[] bytes, int offset, int length) {
+		int hash = 0x811c9dc5;
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash ^ bytes[i]) * 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+	
+	private static boolean equals(byte[] token, byte[] bytes, int offset, int length) {
+		if (token.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (token[i] != bytes[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+}
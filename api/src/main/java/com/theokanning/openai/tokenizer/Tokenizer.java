@@ -0,0 +1,362 @@
+package com.theokanning.openai.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offline byte pair encoding tokenizer using the GPT-2/GPT-3 vocabulary, for counting tokens before sending a request.
+ * <p>
+ * Text is first split into words the same way as the GPT-2 pre-tokenization regex
+ * ({@code 's|'t|'re|'ve|'m|'ll|'d| ?\p{L}+| ?\p{N}+| ?[^\s\p{L}\p{N}]+|\s+(?!\S)|\s+}),
+ * but with a single forward scan instead of a regex. Each word's UTF-8 bytes are then merged pairwise,
+ * always merging the pair that forms the lowest ranked token, until no pair forms a token.
+ * The tokens of recently seen words are cached.
+ * <p>
+ * {@code <|endoftext|>} in the input is encoded as plain text, like the api does for prompts.
+ * Instances are thread safe.
+ *
+ * @see <a href="https://beta.openai.com/tokenizer">https://beta.openai.com/tokenizer</a>
+ */
+public final class Tokenizer {
+	
+	/**
+	 * The id of the {@code <|endoftext|>} token.
+	 */
+	public static final int END_OF_TEXT = 50256;
+	
+	private static final String VOCABULARY = "r50k_base.tiktoken";
+	
+	private static final int MAX_CACHED_WORDS = 50_000;
+	
+	private static final int MAX_CACHED_WORD_LENGTH = 64;
+	
+	private final TokenRanks ranks;
+	
+	private final Map<String, int[]> cache = new ConcurrentHashMap<>();
+	
+	private Tokenizer(TokenRanks ranks) {
+		this.ranks = ranks;
+	}
+	
+	/**
+	 * The tokenizer used by the GPT-3 engines, loaded from the classpath on first use.
+	 */
+	public static Tokenizer gpt3() {
+		return Gpt3.INSTANCE;
+	}
+	
+	/**
+	 * @return the token ids of the given text
+	 */
+	public int[] encode(String text) {
+		IntBuffer tokens = new IntBuffer(text.length() / 3 + 1);
+		encode(text, tokens);
+		return tokens.toArray();
+	}
+	
+	/**
+	 * @return the number of tokens in the given text, or 0 for null
+	 */
+	public int countTokens(String text) {
+		if (text == null || text.isEmpty()) {
+			return 0;
+		}
+		IntBuffer tokens = new IntBuffer(text.length() / 3 + 1);
+		encode(text, tokens);
+		return tokens.size;
+	}
+	
+	/**
+	 * @return the total number of tokens in the given texts
+	 */
+	public int countTokens(List<String> texts) {
+		int count = 0;
+		if (texts != null) {
+			for (String text : texts) {
+				count += countTokens(text);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * @return the text of the given tokens
+	 */
+	public String decode(int[] tokens) {
+		int length = 0;
+		for (int token : tokens) {
+			length += tokenBytes(token).length;
+		}
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		for (int token : tokens) {
+			byte[] tokenBytes = tokenBytes(token);
+			System.arraycopy(tokenBytes, 0, bytes, offset, tokenBytes.length);
+			offset += tokenBytes.length;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private byte[] tokenBytes(int token) {
+		if (token == END_OF_TEXT) {
+			return "<|endoftext|>".getBytes(StandardCharsets.UTF_8);
+		}
+		if (token < 0 || token >= ranks.size()) {
+			throw new IllegalArgumentException("Unknown token " + token);
+		}
+		return ranks.bytes(token);
+	}
+	
+	private void encode(String text, IntBuffer out) {
+		int start = 0;
+		int length = text.length();
+		while (start < length) {
+			int end = wordEnd(text, start);
+			encodeWord(text, start, end, out);
+			start = end;
+		}
+	}
+	
+	private void encodeWord(String text, int start, int end, IntBuffer out) {
+		boolean cacheable = end - start <= MAX_CACHED_WORD_LENGTH;
+		String word = null;
+		if (cacheable) {
+			word = text.substring(start, end);
+			int[] cached = cache.get(word);
+			if (cached != null) {
+				out.addAll(cached);
+				return;
+			}
+		}
+		byte[] bytes = (word != null ? word : text.substring(start, end)).getBytes(StandardCharsets.UTF_8);
+		int before = out.size;
+		int whole = ranks.get(bytes, 0, bytes.length);
+		if (whole >= 0) {
+			out.add(whole);
+		} else {
+			merge(bytes, out);
+		}
+		if (cacheable) {
+			if (cache.size() >= MAX_CACHED_WORDS) {
+				cache.clear();
+			}
+			cache.put(word, Arrays.copyOfRange(out.values, before, out.size));
+		}
+	}
+	
+	/**
+	 * Starts with one part per byte and repeatedly merges the adjacent pair that forms the lowest ranked token.
+	 * {@code parts[i]} is the start offset of part {@code i}, and {@code partRanks[i]} the rank of part {@code i} merged with part {@code i + 1}.
+	 */
+	private void merge(byte[] bytes, IntBuffer out) {
+		int count = bytes.length;
+		int[] parts = new int[count + 1];
+		int[] partRanks = new int[count];
+		for (int i = 0; i <= count; i++) {
+			parts[i] = i;
+		}
+		for (int i = 0; i < count - 1; i++) {
+			partRanks[i] = rank(bytes, parts, count, i);
+		}
+		partRanks[count - 1] = Integer.MAX_VALUE;
+		
+		while (count > 1) {
+			int best = -1;
+			int bestRank = Integer.MAX_VALUE;
+			for (int i = 0; i < count - 1; i++) {
+				if (partRanks[i] < bestRank) {
+					bestRank = partRanks[i];
+					best = i;
+				}
+			}
+			if (best < 0) {
+				break;
+			}
+			System.arraycopy(parts, best + 2, parts, best + 1, count - best - 1);
+			System.arraycopy(partRanks, best + 1, partRanks, best, count - best - 1);
+			count--;
+			partRanks[count - 1] = Integer.MAX_VALUE;
+			if (best > 0) {
+				partRanks[best - 1] = rank(bytes, parts, count, best - 1);
+			}
+			partRanks[best] = rank(bytes, parts, count, best);
+		}
+		for (int i = 0; i < count; i++) {
+			int token = ranks.get(bytes, parts[i], parts[i + 1] - parts[i]);
+			if (token < 0) {
+				throw new IllegalStateException("No token for a single byte, the vocabulary is incomplete");
+			}
+			out.add(token);
+		}
+	}
+	
+	/**
+	 * @return the rank of part {@code i} merged with part {@code i + 1}, or {@code Integer.MAX_VALUE} if that isn't a token
+	 */
+	private int rank(byte[] bytes, int[] parts, int count, int i) {
+		if (i + 1 >= count) {
+			return Integer.MAX_VALUE;
+		}
+		int token = ranks.get(bytes, parts[i], parts[i + 2] - parts[i]);
+		return token < 0 ? Integer.MAX_VALUE : token;
+	}
+	
+	/**
+	 * Finds the end of the word starting at {@code start}, following the alternatives of the GPT-2 pattern in order.
+	 */
+	static int wordEnd(String text, int start) {
+		int length = text.length();
+		char first = text.charAt(start);
+		
+		if (first == '\'' && start + 1 < length) {
+			char next = text.charAt(start + 1);
+			if (next == 's' || next == 't' || next == 'm' || next == 'd') {
+				return start + 2;
+			}
+			if (start + 2 < length) {
+				char after = text.charAt(start + 2);
+				if ((next == 'r' && after == 'e') || (next == 'v' && after == 'e') || (next == 'l' && after == 'l')) {
+					return start + 3;
+				}
+			}
+		}
+		
+		int classStart = start;
+		if (first == ' ' && start + 1 < length && !isWhitespace(text.codePointAt(start + 1))) {
+			classStart = start + 1;
+		}
+		int codePoint = text.codePointAt(classStart);
+		if (!isWhitespace(codePoint)) {
+			int type = characterClass(codePoint);
+			int end = classStart + Character.charCount(codePoint);
+			while (end < length) {
+				int next = text.codePointAt(end);
+				if (isWhitespace(next) || characterClass(next) != type) {
+					break;
+				}
+				end += Character.charCount(next);
+			}
+			return end;
+		}
+		
+		int end = start;
+		int last = start;
+		while (end < length) {
+			int next = text.codePointAt(end);
+			if (!isWhitespace(next)) {
+				break;
+			}
+			last = end;
+			end += Character.charCount(next);
+		}
+		if (end == length || last == start) {
+			return end;
+		}
+		return last;
+	}
+	
+	private static final int LETTER = 0;
+	
+	private static final int NUMBER = 1;
+	
+	private static final int OTHER = 2;
+	
+	private static int characterClass(int codePoint) {
+		if (Character.isLetter(codePoint)) {
+			return LETTER;
+		}
+		switch (Character.getType(codePoint)) {
+			case Character.DECIMAL_DIGIT_NUMBER:
+			case Character.LETTER_NUMBER:
+			case Character.OTHER_NUMBER:
+				return NUMBER;
+			default:
+				return OTHER;
+		}
+	}
+	
+	private static boolean isWhitespace(int codePoint) {
+		return Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint);
+	}
+	
+	static Tokenizer load(InputStream vocabulary) throws IOException {
+		byte[][] tokens = new byte[END_OF_TEXT][];
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(vocabulary, StandardCharsets.US_ASCII))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int space = line.indexOf(' ');
+				if (space < 0) {
+					continue;
+				}
+				int rank = Integer.parseInt(line.substring(space + 1));
+				if (rank >= tokens.length) {
+					tokens = Arrays.copyOf(tokens, rank + 1);
+				}
+				tokens[rank] = Base64.getDecoder().decode(line.substring(0, space));
+			}
+		}
+		return new Tokenizer(new TokenRanks(tokens));
+	}
+	
+	private static final class Gpt3 {
+		
+		static final Tokenizer INSTANCE;
+		
+		static {
+			InputStream vocabulary = Tokenizer.class.getResourceAsStream(VOCABULARY);
+			if (vocabulary == null) {
+				throw new IllegalStateException("Missing tokenizer vocabulary " + VOCABULARY);
+			}
+			try {
+				INSTANCE = load(vocabulary);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+	}
+	
+	/**
+	 * A growable int array, to collect tokens without boxing.
+	 */
+	private static final class IntBuffer {
+		
+		int[] values;
+		
+		int size;
+		
+		IntBuffer(int capacity) {
+			values = new int[capacity];
+		}
+		
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2 + 1);
+			}
+			values[size++] = value;
+		}
+		
+		void addAll(int[] added) {
+			if (size + added.length > values.length) {
+				values = Arrays.copyOf(values, Math.max(size * 2, size + added.length));
+			}
+			System.arraycopy(added, 0, values, size, added.length);
+			size += added.length;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,32 @@
+package com.theokanning.openai.tokenizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the tokenizer against encodings produced by the reference r50k_base implementation.
+ */
+public class TokenizerTest {
+	
+	private final Tokenizer tokenizer = Tokenizer.gpt3();
+	
+	@Test
+	public void encodesLikeTheReference() {
+		assertArrayEquals(new int[]{31373, 995}, tokenizer.encode("hello world"));
+		assertArrayEquals(new int[]{15496, 11, 995, 0}, tokenizer.encode("Hello, world!"));
+		assertArrayEquals(new int[]{83, 1134, 30001, 318, 1049, 0}, tokenizer.encode("tiktoken is great!"));
+		assertArrayEquals(new int[]{464, 2068, 7586, 21831, 18045, 625, 262, 16931, 3290, 13},
+				tokenizer.encode("The quick brown fox jumps over the lazy dog."));
+		assertArrayEquals(new int[]{27, 91, 437, 1659, 5239, 91, 29}, tokenizer.encode("<|endoftext|>"));
+	}
+	
+	@Test
+	public void countsAndDecodes() {
+		String text = "The quick brown fox jumps over the lazy dog.";
+		assertEquals(10, tokenizer.countTokens(text));
+		assertEquals(text, tokenizer.decode(tokenizer.encode(text)));
+	}
+	
+}
@@ -0,0 +1,53 @@
+package com.theokanning.openai.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.completion.CompactLogProbDeserializer;
+import com.theokanning.openai.completion.CompletionResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserializes completion responses, with and without log probabilities.
+ * With {@code logprobs} set every generated token adds a boxed double, a boxed offset and a map of alternatives,
+ * unless the compact decoding is used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+	
+	@Param({"16", "256"})
+	public int tokens;
+	
+	@Param({"0", "1", "5"})
+	public int logprobs;
+	
+	@Param({"false", "true"})
+	public boolean compact;
+	
+	ObjectMapper mapper;
+	
+	byte[] body;
+	
+	@Setup
+	public void setUp() {
+		mapper = OpenAiService.defaultObjectMapper();
+		if (compact) {
+			mapper.registerModule(CompactLogProbDeserializer.module());
+		}
+		body = Payloads.completionResult(tokens, logprobs).getBytes(StandardCharsets.UTF_8);
+	}
+	
+	@Benchmark
+	public CompletionResult deserialize() throws IOException {
+		return mapper.readValue(body, CompletionResult.class);
+	}
+	
+}
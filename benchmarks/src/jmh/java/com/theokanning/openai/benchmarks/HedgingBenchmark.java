@@ -0,0 +1,62 @@
+package com.theokanning.openai.benchmarks;
+
+import com.theokanning.openai.HedgePolicy;
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.engine.Engine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency percentiles of an idempotent call against a stub that answers in 5 ms, except for 2% of the calls which take 200 ms,
+ * with and without hedging. Compare the p0.99 of both services: the hedged one sends a second request once
+ * the first has taken longer than the p0.95 latency, so the slow calls mostly finish in that delay plus a usual latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HedgingBenchmark {
+	
+	StubServer server;
+	
+	OpenAiService plain;
+	
+	OpenAiService hedged;
+	
+	@Setup
+	public void setUp() throws IOException {
+		server = new StubServer(5, false);
+		server.setTail(0.02, 200);
+		server.respond("/engines/", Payloads.engine());
+		plain = OpenAiService.builder("sk-benchmark")
+				.baseUrl(server.baseUrl())
+				.build();
+		hedged = OpenAiService.builder("sk-benchmark")
+				.baseUrl(server.baseUrl())
+				.hedgePolicy(HedgePolicy.builder()
+						.initialDelay(Duration.ofMillis(20))
+						.build())
+				.build();
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		server.close();
+	}
+	
+	@Benchmark
+	public Engine plain() {
+		return plain.getEngine("ada");
+	}
+	
+	@Benchmark
+	public Engine hedged() {
+		return hedged.getEngine("ada");
+	}
+	
+}
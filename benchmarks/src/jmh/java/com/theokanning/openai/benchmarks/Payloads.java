@@ -0,0 +1,104 @@
+package com.theokanning.openai.benchmarks;
+
+import com.theokanning.openai.classification.ClassificationRequest;
+import com.theokanning.openai.completion.CompletionRequest;
+import com.theokanning.openai.search.SearchRequest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Representative requests and response bodies shared by the benchmarks.
+ */
+final class Payloads {
+	
+	static final String PROMPT = "Somebody once told me the world is gonna roll me";
+	
+	private Payloads() {
+	}
+	
+	static CompletionRequest smallCompletion() {
+		return CompletionRequest.builder()
+				.engineId("ada")
+				.prompt(PROMPT)
+				.maxTokens(16)
+				.temperature(0.7)
+				.build();
+	}
+	
+	static CompletionRequest logitBiasCompletion(int entries) {
+		CompletionRequest.CompletionRequestBuilder builder = CompletionRequest.builder()
+				.engineId("ada")
+				.prompt(PROMPT)
+				.maxTokens(16);
+		for (int i = 0; i < entries; i++) {
+			builder.logitBias(Integer.toString(i * 7), i % 2 == 0 ? -100 : 100);
+		}
+		return builder.build();
+	}
+	
+	static SearchRequest search(int documents) {
+		SearchRequest.SearchRequestBuilder builder = SearchRequest.builder()
+				.engineId("ada")
+				.query("the world is gonna roll me");
+		for (int i = 0; i < documents; i++) {
+			builder.document("Document " + i + ": " + PROMPT + ", I ain't the sharpest tool in the shed.");
+		}
+		return builder.build();
+	}
+	
+	static ClassificationRequest classification(int examples) {
+		ClassificationRequest.ClassificationRequestBuilder builder = ClassificationRequest.builder()
+				.model("curie")
+				.query("It is a rainy day :(")
+				.label("Positive")
+				.label("Negative");
+		for (int i = 0; i < examples; i++) {
+			builder.example(Arrays.asList("Example " + i + ": " + PROMPT, i % 2 == 0 ? "Positive" : "Negative"));
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * A completion response with the given number of generated tokens, and {@code logprobs} top alternatives per token if positive.
+	 */
+	static String completionResult(int tokens, int logprobs) {
+		Random random = new Random(tokens * 31L + logprobs);
+		StringBuilder text = new StringBuilder();
+		StringBuilder tokenList = new StringBuilder();
+		StringBuilder tokenLogprobs = new StringBuilder();
+		StringBuilder topLogprobs = new StringBuilder();
+		StringBuilder textOffset = new StringBuilder();
+		for (int i = 0; i < tokens; i++) {
+			String token = " tok" + i;
+			String separator = i == 0 ? "" : ",";
+			textOffset.append(separator).append(text.length());
+			text.append(token);
+			tokenList.append(separator).append('"').append(token).append('"');
+			tokenLogprobs.append(separator).append((float) (-random.nextDouble() * 5));
+			topLogprobs.append(separator).append('{');
+			for (int j = 0; j < logprobs; j++) {
+				topLogprobs.append(j == 0 ? "" : ",").append("\" alt").append(j).append("\":").append((float) (-random.nextDouble() * 10));
+			}
+			topLogprobs.append('}');
+		}
+		String logprobResult = logprobs <= 0 ? "null" : "{\"tokens\":[" + tokenList + "],\"token_logprobs\":[" + tokenLogprobs
+				+ "],\"top_logprobs\":[" + topLogprobs + "],\"text_offset\":[" + textOffset + "]}";
+		return "{\"id\":\"cmpl-1\",\"object\":\"text_completion\",\"created\":1,\"model\":\"ada\",\"choices\":[{\"text\":\""
+				+ text + "\",\"index\":0,\"logprobs\":" + logprobResult + ",\"finish_reason\":\"length\"}]}";
+	}
+	
+	static String engine() {
+		return "{\"id\":\"ada\",\"object\":\"engine\",\"owner\":\"openai\",\"ready\":true}";
+	}
+	
+	static String searchResult(int documents) {
+		StringBuilder body = new StringBuilder("{\"object\":\"list\",\"data\":[");
+		for (int i = 0; i < documents; i++) {
+			body.append(i == 0 ? "" : ",").append("{\"object\":\"search_result\",\"document\":").append(i)
+					.append(",\"score\":").append(200 - i * 0.5).append('}');
+		}
+		return body.append("]}").toString();
+	}
+	
+}
@@ -0,0 +1,89 @@
+package com.theokanning.openai.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.RequestTemplate;
+import com.theokanning.openai.classification.ClassificationRequest;
+import com.theokanning.openai.search.SearchRequest;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing a request body from the request object, as the Retrofit converter does, with filling in a {@link RequestTemplate}.
+ * Run with the gc profiler to see allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestTemplateBenchmark {
+	
+	private static final MediaType JSON = MediaType.parse("application/json; charset=UTF-8");
+	
+	private static final String QUERY = "the world is gonna roll me";
+	
+	@Param({"search200", "classification200"})
+	public String payload;
+	
+	ObjectMapper mapper;
+	
+	SearchRequest search;
+	
+	ClassificationRequest classification;
+	
+	RequestTemplate<?> template;
+	
+	Buffer sink;
+	
+	@Setup
+	public void setUp() {
+		OpenAiService service = OpenAiService.builder("token").build();
+		mapper = OpenAiService.defaultObjectMapper();
+		sink = new Buffer();
+		switch (payload) {
+			case "search200":
+				search = Payloads.search(200);
+				template = service.searchTemplate(search);
+				break;
+			case "classification200":
+				classification = Payloads.classification(200);
+				template = service.classificationTemplate(classification);
+				break;
+			default:
+				throw new IllegalArgumentException(payload);
+		}
+	}
+	
+	@Benchmark
+	public long requestObject() throws IOException {
+		Object request;
+		if (search != null) {
+			search.setQuery(QUERY);
+			request = search;
+		} else {
+			classification.setQuery(QUERY);
+			request = classification;
+		}
+		return write(RequestBody.create(JSON, mapper.writeValueAsBytes(request)));
+	}
+	
+	@Benchmark
+	public long template() throws IOException {
+		return write(template.toRequestBody(QUERY));
+	}
+	
+	private long write(RequestBody body) throws IOException {
+		body.writeTo(sink);
+		long size = sink.size();
+		sink.clear();
+		return size;
+	}
+	
+}
@@ -0,0 +1,66 @@
+package com.theokanning.openai.benchmarks;
+
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.completion.CompletionRequest;
+import com.theokanning.openai.completion.CompletionResult;
+import com.theokanning.openai.search.SearchRequest;
+import com.theokanning.openai.search.SearchResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full client path against an in-process plain http stub that answers immediately:
+ * serialization, interceptors, OkHttp, Retrofit's call adapter and deserialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RoundTripBenchmark {
+	
+	StubServer server;
+	
+	OpenAiService service;
+	
+	CompletionRequest completion;
+	
+	SearchRequest search;
+	
+	@Setup
+	public void setUp() throws IOException {
+		server = new StubServer(0, false);
+		server.respond("/completions", Payloads.completionResult(16, 0));
+		server.respond("/search", Payloads.searchResult(200));
+		service = OpenAiService.builder("sk-benchmark")
+				.baseUrl(server.baseUrl())
+				.build();
+		completion = Payloads.smallCompletion();
+		search = Payloads.search(200);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		server.close();
+	}
+	
+	@Benchmark
+	public CompletionResult completionBlocking() {
+		return service.createCompletion("ada", completion);
+	}
+	
+	@Benchmark
+	public CompletionResult completionAsync() {
+		return service.createCompletionAsync("ada", completion).join();
+	}
+	
+	@Benchmark
+	public List<SearchResult> search200() {
+		return service.search("ada", search);
+	}
+	
+}
@@ -0,0 +1,67 @@
+package com.theokanning.openai.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.completion.CompletionRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes requests the way the Retrofit converter does. Run with the gc profiler to see allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+	
+	@Param({"smallCompletion", "search200", "logitBias1000"})
+	public String payload;
+	
+	ObjectMapper mapper;
+	
+	Object request;
+	
+	@Setup
+	public void setUp() {
+		mapper = OpenAiService.defaultObjectMapper();
+		switch (payload) {
+			case "smallCompletion":
+				request = Payloads.smallCompletion();
+				break;
+			case "search200":
+				request = Payloads.search(200);
+				break;
+			case "logitBias1000":
+				request = Payloads.logitBiasCompletion(1000);
+				break;
+			default:
+				throw new IllegalArgumentException(payload);
+		}
+	}
+	
+	@Benchmark
+	public byte[] serialize() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(request);
+	}
+	
+	/**
+	 * Includes building the request with the Lombok builder, as callers do for every call.
+	 */
+	@Benchmark
+	public byte[] buildAndSerializeCompletion() throws JsonProcessingException {
+		CompletionRequest completion = CompletionRequest.builder()
+				.engineId("ada")
+				.prompt(Payloads.PROMPT)
+				.maxTokens(16)
+				.temperature(0.7)
+				.stop("\n")
+				.build();
+		return mapper.writeValueAsBytes(completion);
+	}
+	
+}
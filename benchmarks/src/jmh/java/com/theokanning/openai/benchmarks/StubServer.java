@@ -0,0 +1,127 @@
+package com.theokanning.openai.benchmarks;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process stand-in for the OpenAI api, serving canned json bodies after a fixed delay,
+ * and optionally a much longer one for a share of the requests.
+ */
+public class StubServer implements Closeable {
+	
+	static final String COMPLETION = "{\"id\":\"cmpl-1\",\"object\":\"text_completion\",\"created\":1,\"model\":\"ada\","
+			+ "\"choices\":[{\"text\":\" stub\",\"index\":0,\"logprobs\":null,\"finish_reason\":\"length\"}]}";
+	
+	private final MockWebServer server = new MockWebServer();
+	
+	private final HandshakeCertificates clientCertificates;
+	
+	private final Map<String, String> bodies = new ConcurrentHashMap<>();
+	
+	private volatile long latencyMillis;
+	
+	private volatile double tailShare;
+	
+	private volatile long tailLatencyMillis;
+	
+	public StubServer(long latencyMillis) throws IOException {
+		this(latencyMillis, true);
+	}
+	
+	/**
+	 * @param latencyMillis how long to wait before sending the response headers
+	 * @param tls           whether to serve https, with HTTP/2 when the client supports it, or plain HTTP/1.1
+	 */
+	public StubServer(long latencyMillis, boolean tls) throws IOException {
+		this.latencyMillis = latencyMillis;
+		String host = InetAddress.getByName("localhost").getCanonicalHostName();
+		HeldCertificate certificate = new HeldCertificate.Builder()
+				.addSubjectAlternativeName(host)
+				.addSubjectAlternativeName("localhost")
+				.build();
+		HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+				.heldCertificate(certificate)
+				.build();
+		clientCertificates = new HandshakeCertificates.Builder()
+				.addTrustedCertificate(certificate.certificate())
+				.build();
+		
+		if (tls) {
+			server.useHttps(serverCertificates.sslSocketFactory(), false);
+			server.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+		}
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String path = request.getPath();
+				String body = COMPLETION;
+				for (Map.Entry<String, String> entry : bodies.entrySet()) {
+					if (path.contains(entry.getKey())) {
+						body = entry.getValue();
+					}
+				}
+				return new MockResponse()
+						.setHeader("Content-Type", "application/json")
+						.setBody(body)
+						.setHeadersDelay(latencyMillis(), TimeUnit.MILLISECONDS);
+			}
+		});
+		server.start();
+	}
+	
+	/**
+	 * Serves the given body for every request whose path contains {@code pathPart}, instead of the default completion.
+	 */
+	public void respond(String pathPart, String body) {
+		bodies.put(pathPart, body);
+	}
+	
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+	
+	/**
+	 * Delays a random share of the responses by {@code tailLatencyMillis} instead of the usual latency.
+	 */
+	public void setTail(double share, long tailLatencyMillis) {
+		this.tailShare = share;
+		this.tailLatencyMillis = tailLatencyMillis;
+	}
+	
+	private long latencyMillis() {
+		return ThreadLocalRandom.current().nextDouble() < tailShare ? tailLatencyMillis : latencyMillis;
+	}
+	
+	public String baseUrl() {
+		return server.url("/").toString();
+	}
+	
+	/**
+	 * A client builder that trusts the stub's self-signed certificate.
+	 */
+	public OkHttpClient.Builder clientBuilder() {
+		return new OkHttpClient.Builder()
+				.sslSocketFactory(clientCertificates.sslSocketFactory(), clientCertificates.trustManager());
+	}
+	
+	@Override
+	public void close() throws IOException {
+		server.shutdown();
+	}
+	
+}
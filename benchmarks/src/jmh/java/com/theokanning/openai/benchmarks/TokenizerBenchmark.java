@@ -0,0 +1,72 @@
+package com.theokanning.openai.benchmarks;
+
+import com.theokanning.openai.tokenizer.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding speed of the bundled tokenizer. The {@code tokens} counter reports tokens per second.
+ * <p>
+ * {@code english} repeats common words and mostly hits the word cache, {@code unique} has more distinct words than the
+ * cache holds, so most of them go through the byte pair merges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+	
+	static final String PARAGRAPH = "The search endpoint computes similarity scores between provided query and documents. "
+			+ "Documents can be passed directly to the API if there are no more than 200 of them. "
+			+ "To go beyond the 200 document limit, documents can be processed offline and then used for efficient "
+			+ "retrieval at query time. It's important that you don't exceed 2048 tokens, which we'll check locally!\n\n";
+	
+	@Param({"english", "unique"})
+	public String text;
+	
+	Tokenizer tokenizer;
+	
+	String input;
+	
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Tokens {
+		
+		public long tokens;
+		
+	}
+	
+	@Setup
+	public void setUp() {
+		tokenizer = Tokenizer.gpt3();
+		StringBuilder builder = new StringBuilder();
+		if ("english".equals(text)) {
+			for (int i = 0; i < 20; i++) {
+				builder.append(PARAGRAPH);
+			}
+		} else {
+			for (int i = 0; i < 60_000; i++) {
+				builder.append(' ').append(Long.toString(i * 2654435761L, 36)).append("xq").append(i);
+			}
+		}
+		input = builder.toString();
+	}
+	
+	@Benchmark
+	public int[] encode(Tokens counter) {
+		int[] tokens = tokenizer.encode(input);
+		counter.tokens += tokens.length;
+		return tokens;
+	}
+	
+	@Benchmark
+	public int countTokens(Tokens counter) {
+		int count = tokenizer.countTokens(input);
+		counter.tokens += count;
+		return count;
+	}
+	
+}
@@ -0,0 +1,141 @@
+package com.theokanning.openai.benchmarks;
+
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.completion.CompletionRequest;
+import com.theokanning.openai.completion.CompletionResult;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends bursts of concurrent completions to a TLS stub server, with a pause between bursts,
+ * and reports how long each burst takes along with how many connections and TLS handshakes it needed.
+ * <p>
+ * With a 1 second keep-alive every burst after an idle period pays for new handshakes,
+ * and with 5 requests per host the rest of the burst queues in the dispatcher.
+ * Run with {@code ./gradlew benchmarks:jmh -PjmhInclude=TransportBenchmark} and compare the p0.99 rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TransportBenchmark {
+	
+	static final int BURST_SIZE = 32;
+	
+	@Param({"1000", "300000"})
+	public long keepAliveMillis;
+	
+	@Param({"5", "64"})
+	public int maxRequestsPerHost;
+	
+	@Param({"HTTP_1_1", "HTTP_2"})
+	public Protocol protocol;
+	
+	@Param({"1500"})
+	public long idleMillis;
+	
+	@Param({"20"})
+	public long latencyMillis;
+	
+	static final AtomicLong connects = new AtomicLong();
+	
+	static final AtomicLong handshakes = new AtomicLong();
+	
+	StubServer server;
+	
+	OpenAiService service;
+	
+	CompletionRequest request;
+	
+	/**
+	 * Connection counts per burst, reported next to the latency results.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Connections {
+		
+		public long connects;
+		
+		public long handshakes;
+		
+	}
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		server = new StubServer(latencyMillis);
+		
+		List<Protocol> protocols = protocol == Protocol.HTTP_2
+				? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+				: Collections.singletonList(Protocol.HTTP_1_1);
+		
+		service = OpenAiService.builder("sk-benchmark")
+				.baseUrl(server.baseUrl())
+				.okHttpClient(server.clientBuilder().eventListener(new CountingListener()).build())
+				.keepAlive(Duration.ofMillis(keepAliveMillis))
+				.maxRequestsPerHost(maxRequestsPerHost)
+				.protocols(protocols)
+				.build();
+		
+		request = CompletionRequest.builder()
+				.engineId("ada")
+				.prompt("Somebody once told me the world is gonna roll me")
+				.maxTokens(16)
+				.build();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		server.close();
+	}
+	
+	@Setup(Level.Invocation)
+	public void idle() throws InterruptedException {
+		Thread.sleep(idleMillis);
+	}
+	
+	@Benchmark
+	public void burst(Connections counters) {
+		long connectsBefore = connects.get();
+		long handshakesBefore = handshakes.get();
+		
+		List<CompletableFuture<CompletionResult>> futures = new ArrayList<>(BURST_SIZE);
+		for (int i = 0; i < BURST_SIZE; i++) {
+			futures.add(service.createCompletionAsync("ada", request));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		
+		counters.connects += connects.get() - connectsBefore;
+		counters.handshakes += handshakes.get() - handshakesBefore;
+	}
+	
+	static class CountingListener extends EventListener {
+		
+		@Override
+		public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+			connects.incrementAndGet();
+		}
+		
+		@Override
+		public void secureConnectStart(Call call) {
+			handshakes.incrementAndGet();
+		}
+		
+	}
+	
+}
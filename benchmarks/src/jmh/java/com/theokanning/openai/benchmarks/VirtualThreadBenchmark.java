@@ -0,0 +1,110 @@
+package com.theokanning.openai.benchmarks;
+
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.VirtualThreads;
+import com.theokanning.openai.completion.CompletionRequest;
+import com.theokanning.openai.completion.CompletionResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes 10,000 concurrent completion calls against the stub and reports how long it takes until all have returned.
+ * <ul>
+ *     <li>{@code PLATFORM_POOL} calls the blocking method from a fixed pool of platform threads, like a typical servlet container</li>
+ *     <li>{@code VIRTUAL} calls the blocking method from a virtual thread per call, with the client in virtual thread mode</li>
+ *     <li>{@code COMPLETE_ALL} fans out with {@link OpenAiService#completeAll} from a single caller thread</li>
+ * </ul>
+ * {@code VIRTUAL} needs Java 21, run with {@code ./gradlew benchmarks:jmh -PjmhInclude=VirtualThreadBenchmark} on a matching JDK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+	public enum Callers {
+		PLATFORM_POOL, VIRTUAL, COMPLETE_ALL
+	}
+
+	@Param({"PLATFORM_POOL", "VIRTUAL", "COMPLETE_ALL"})
+	public Callers callers;
+
+	@Param({"10000"})
+	public int calls;
+
+	@Param({"200"})
+	public int platformThreads;
+
+	@Param({"100"})
+	public long latencyMillis;
+
+	StubServer server;
+
+	OpenAiService service;
+
+	ExecutorService callerExecutor;
+
+	List<CompletionRequest> requests;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		server = new StubServer(latencyMillis);
+		service = OpenAiService.builder("sk-benchmark")
+				.baseUrl(server.baseUrl())
+				.okHttpClient(server.clientBuilder().build())
+				.maxRequests(calls)
+				.maxRequestsPerHost(calls)
+				.virtualThreads(callers == Callers.VIRTUAL)
+				.build();
+
+		if (callers == Callers.VIRTUAL) {
+			callerExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+		} else if (callers == Callers.PLATFORM_POOL) {
+			callerExecutor = Executors.newFixedThreadPool(platformThreads);
+		}
+
+		CompletionRequest request = CompletionRequest.builder()
+				.engineId("ada")
+				.prompt("Somebody once told me the world is gonna roll me")
+				.maxTokens(16)
+				.build();
+		requests = Collections.nCopies(calls, request);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (callerExecutor != null) {
+			callerExecutor.shutdownNow();
+		}
+		server.close();
+	}
+
+	@Benchmark
+	public int concurrentCalls() throws InterruptedException, ExecutionException {
+		if (callers == Callers.COMPLETE_ALL) {
+			return service.completeAll("ada", requests, calls).size();
+		}
+		List<Future<CompletionResult>> futures = new ArrayList<>(calls);
+		for (CompletionRequest request : requests) {
+			futures.add(callerExecutor.submit(() -> service.createCompletion("ada", request)));
+		}
+		int completed = 0;
+		for (Future<CompletionResult> future : futures) {
+			future.get();
+			completed++;
+		}
+		return completed;
+	}
+
+}
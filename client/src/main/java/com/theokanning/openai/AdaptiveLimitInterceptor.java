@@ -0,0 +1,69 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.RateLimitHeaders;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OkHttp Interceptor that feeds the outcome of each call to an {@link AdaptiveLimiter}, and adds the endpoint's limit
+ * to the response as the {@value AdaptiveLimiter#LIMIT_HEADER} header.
+ * <p>
+ * Only calls made through {@link OpenAiApi} are sampled. Cancelled calls and network errors other than timeouts are ignored.
+ */
+public class AdaptiveLimitInterceptor implements Interceptor {
+	
+	private final AdaptiveLimiter limiter;
+	
+	public AdaptiveLimitInterceptor(AdaptiveLimiter limiter) {
+		this.limiter = limiter;
+	}
+	
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		Invocation invocation = request.tag(Invocation.class);
+		Endpoint endpoint = invocation != null ? Endpoint.forMethod(invocation.method()) : null;
+		if (endpoint == null) {
+			return chain.proceed(request);
+		}
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = chain.proceed(request);
+		} catch (SocketTimeoutException e) {
+			if (!chain.call().isCanceled()) {
+				limiter.onSample(endpoint, System.nanoTime() - start, true);
+			}
+			throw e;
+		}
+		RateLimitHeaders rateLimit = RateLimitHeaders.parse(response.headers());
+		long rttNanos = rateLimit != null && rateLimit.getProcessingMillis() >= 0
+				? TimeUnit.MILLISECONDS.toNanos(rateLimit.getProcessingMillis())
+				: System.nanoTime() - start;
+		int limit = limiter.onSample(endpoint, rttNanos, isOverload(response.code(), rateLimit));
+		if (limit < 0) {
+			return response;
+		}
+		return response.newBuilder()
+				.header(AdaptiveLimiter.LIMIT_HEADER, String.valueOf(limit))
+				.build();
+	}
+	
+	/**
+	 * The rate limit headers describe the quota of the key that served the call, which every endpoint draws from,
+	 * so they can't be weighed against the calls in flight of one bulkhead. Only a used up quota counts.
+	 */
+	static boolean isOverload(int statusCode, RateLimitHeaders rateLimit) {
+		if (statusCode == 429 || statusCode == 503) {
+			return true;
+		}
+		return rateLimit != null && rateLimit.isExhausted();
+	}
+	
+}
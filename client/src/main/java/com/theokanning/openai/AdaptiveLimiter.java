@@ -0,0 +1,313 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.MetricsRecorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Adjusts the number of concurrent calls per endpoint to what the api can currently take, instead of a fixed limit that
+ * is either too low and leaves quota unused, or too high and causes 429s and queueing on the server.
+ * <p>
+ * Every endpoint gets a {@link Bulkhead}, whose concurrency limit is the one adjusted. Endpoints configured in the same
+ * bulkhead share a limit, the others get one each, starting at {@link Builder#initialLimit}.
+ * Each response is a sample: its latency, taken from the {@code openai-processing-ms} header if present, and whether it
+ * signals overload, which is a 429 or 503, a read timeout, or {@code x-ratelimit-remaining-*} headers showing the quota
+ * of the key is used up. On overload the limit is lowered by {@link Builder#backoffRatio}, at most once per round trip
+ * since the calls already in flight were sent under the old limit. Otherwise the {@link Algorithm} compares the recent
+ * latency with the baseline, the lowest latency seen lately.
+ * <p>
+ * The current limit is reported to {@link MetricsRecorder#limitChanged}, and added to every response as the
+ * {@value #LIMIT_HEADER} header. Each bulkhead has its own dispatcher, so the limits aren't capped by
+ * {@link OpenAiServiceBuilder#maxRequests}, only by {@link Builder#maxLimit}.
+ *
+ * @see OpenAiServiceBuilder#adaptiveLimiter(AdaptiveLimiter)
+ * @see <a href="https://github.com/Netflix/concurrency-limits">Netflix concurrency-limits</a>
+ */
+public class AdaptiveLimiter {
+	
+	/**
+	 * The response header holding the concurrency limit of the endpoint after the response was taken into account.
+	 */
+	public static final String LIMIT_HEADER = "X-Client-Concurrency-Limit";
+	
+	public enum Algorithm {
+		/**
+		 * Grows the limit by one per round of responses while at least half of it is in use, and backs off on overload
+		 * or when the latency exceeds {@link Builder#rttTolerance} times the baseline.
+		 */
+		AIMD,
+		/**
+		 * Scales the limit by the ratio of the baseline latency to the recent one, so it shrinks as soon as calls start
+		 * queueing in the api, and adds the square root of the limit as headroom for growth.
+		 */
+		GRADIENT
+	}
+	
+	/**
+	 * The number of samples after which the baseline latency, the lowest one seen, is measured afresh,
+	 * so that it follows lasting changes like a larger model.
+	 */
+	private static final int BASELINE_WINDOW = 500;
+	
+	/**
+	 * The weight of each sample in the recent latency.
+	 */
+	private static final double RECENT_WEIGHT = 0.1;
+	
+	private final Algorithm algorithm;
+	
+	private final int initialLimit;
+	
+	private final int minLimit;
+	
+	private final int maxLimit;
+	
+	private final double backoffRatio;
+	
+	private final double rttTolerance;
+	
+	private final double smoothing;
+	
+	private final Map<Endpoint, Limit> limits = new EnumMap<>(Endpoint.class);
+	
+	private MetricsRecorder metrics = MetricsRecorder.NONE;
+	
+	private AdaptiveLimiter(Builder builder) {
+		this.algorithm = builder.algorithm;
+		this.initialLimit = builder.initialLimit;
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.backoffRatio = builder.backoffRatio;
+		this.rttTolerance = builder.rttTolerance;
+		this.smoothing = builder.smoothing;
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+	
+	int getInitialLimit() {
+		return initialLimit;
+	}
+	
+	/**
+	 * @return the current limit on concurrent calls to the endpoint, or -1 if the limiter isn't used by a service yet
+	 */
+	public synchronized int getLimit(Endpoint endpoint) {
+		Limit limit = limits.get(endpoint);
+		return limit != null ? limit.current : -1;
+	}
+	
+	/**
+	 * Takes over the limits of the service's bulkheads. A limiter can only be used by one service.
+	 */
+	synchronized void bind(Map<String, Bulkhead> bulkheads, MetricsRecorder metrics) {
+		if (!limits.isEmpty()) {
+			throw new IllegalStateException("The limiter is already used by another service");
+		}
+		this.metrics = metrics;
+		for (Bulkhead bulkhead : bulkheads.values()) {
+			Limit limit = new Limit(bulkhead);
+			for (Endpoint endpoint : bulkhead.getEndpoints()) {
+				limits.put(endpoint, limit);
+			}
+			limit.apply();
+		}
+	}
+	
+	/**
+	 * Adjusts the limit of the endpoint to the outcome of a call.
+	 *
+	 * @param rttNanos the latency of the call
+	 * @param overload whether the response signals that the api or the quota is overloaded
+	 * @return the limit after the adjustment, or -1 if the endpoint has none
+	 */
+	int onSample(Endpoint endpoint, long rttNanos, boolean overload) {
+		Limit limit;
+		synchronized (this) {
+			limit = limits.get(endpoint);
+		}
+		return limit != null ? limit.sample(rttNanos, overload) : -1;
+	}
+	
+	/**
+	 * The limit of one bulkhead, kept as a fraction so that small steps add up.
+	 */
+	private final class Limit {
+		
+		private final Bulkhead bulkhead;
+		
+		private double estimate;
+		
+		private double recentRttNanos;
+		
+		private long windowMinRttNanos = Long.MAX_VALUE;
+		
+		private long previousMinRttNanos = Long.MAX_VALUE;
+		
+		private int windowSamples;
+		
+		private long lastDecreaseNanos;
+		
+		private volatile int current;
+		
+		Limit(Bulkhead bulkhead) {
+			this.bulkhead = bulkhead;
+			this.estimate = Math.max(minLimit, Math.min(maxLimit, bulkhead.getMaxRequests()));
+		}
+		
+		synchronized int sample(long rttNanos, boolean overload) {
+			int inFlight = bulkhead.getGauges().getRunningCalls();
+			if (overload) {
+				// rejected calls are answered quickly, so their latency would drag the baseline down
+				decrease();
+			} else {
+				observe(rttNanos);
+				double baseline = Math.min(windowMinRttNanos, previousMinRttNanos);
+				if (algorithm == Algorithm.AIMD) {
+					if (recentRttNanos > rttTolerance * baseline) {
+						decrease();
+					} else if (inFlight * 2 >= estimate) {
+						estimate += 1 / estimate;
+					}
+				} else if (inFlight * 2 >= estimate) {
+					// calls that don't use half the limit say nothing about whether it is too low
+					double gradient = Math.max(0.5, Math.min(1, rttTolerance * baseline / recentRttNanos));
+					double target = estimate * gradient + Math.sqrt(estimate);
+					// spread the step over a round of responses, so that the limit moves at the same pace at any size
+					double weight = smoothing / estimate;
+					estimate = estimate * (1 - weight) + target * weight;
+				}
+			}
+			estimate = Math.max(minLimit, Math.min(maxLimit, estimate));
+			apply();
+			return current;
+		}
+		
+		private void observe(long rttNanos) {
+			rttNanos = Math.max(1, rttNanos);
+			recentRttNanos = recentRttNanos == 0 ? rttNanos : recentRttNanos + (rttNanos - recentRttNanos) * RECENT_WEIGHT;
+			windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+			if (++windowSamples >= BASELINE_WINDOW) {
+				previousMinRttNanos = windowMinRttNanos;
+				windowMinRttNanos = Long.MAX_VALUE;
+				windowSamples = 0;
+			}
+		}
+		
+		private void decrease() {
+			long now = System.nanoTime();
+			if (lastDecreaseNanos == 0 || now - lastDecreaseNanos >= recentRttNanos) {
+				estimate *= backoffRatio;
+				lastDecreaseNanos = now;
+			}
+		}
+		
+		void apply() {
+			int rounded = (int) estimate;
+			if (rounded != current) {
+				current = rounded;
+				bulkhead.setMaxRequests(rounded);
+				for (Endpoint endpoint : bulkhead.getEndpoints()) {
+					metrics.limitChanged(endpoint, rounded);
+				}
+			}
+		}
+		
+	}
+	
+	public static class Builder {
+		
+		private Algorithm algorithm = Algorithm.GRADIENT;
+		
+		private int initialLimit = 10;
+		
+		private int minLimit = 1;
+		
+		private int maxLimit = 200;
+		
+		private double backoffRatio = 0.9;
+		
+		private double rttTolerance = 1.5;
+		
+		private double smoothing = 0.2;
+		
+		Builder() {
+		}
+		
+		/**
+		 * Defaults to {@link Algorithm#GRADIENT}.
+		 */
+		public Builder algorithm(Algorithm algorithm) {
+			this.algorithm = algorithm;
+			return this;
+		}
+		
+		/**
+		 * The starting limit of endpoints that aren't in a configured bulkhead, the others start at the bulkhead's limit.
+		 * Defaults to 10.
+		 */
+		public Builder initialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+			return this;
+		}
+		
+		/**
+		 * Defaults to 1.
+		 */
+		public Builder minLimit(int minLimit) {
+			this.minLimit = minLimit;
+			return this;
+		}
+		
+		/**
+		 * Defaults to 200.
+		 */
+		public Builder maxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+			return this;
+		}
+		
+		/**
+		 * The factor the limit is multiplied with on overload, between 0 and 1. Defaults to 0.9.
+		 */
+		public Builder backoffRatio(double backoffRatio) {
+			this.backoffRatio = backoffRatio;
+			return this;
+		}
+		
+		/**
+		 * How many times the baseline the recent latency may be before it counts against the limit. Defaults to 1.5.
+		 */
+		public Builder rttTolerance(double rttTolerance) {
+			this.rttTolerance = rttTolerance;
+			return this;
+		}
+		
+		/**
+		 * How far the {@link Algorithm#GRADIENT} limit moves towards its new target per round of responses, between 0 and 1.
+		 * Defaults to 0.2.
+		 */
+		public Builder smoothing(double smoothing) {
+			this.smoothing = smoothing;
+			return this;
+		}
+		
+		public AdaptiveLimiter build() {
+			if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+				throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+			}
+			if (backoffRatio <= 0 || backoffRatio >= 1 || smoothing <= 0 || smoothing > 1 || rttTolerance < 1) {
+				throw new IllegalArgumentException("backoffRatio must be between 0 and 1, smoothing above 0 and at most 1, rttTolerance at least 1");
+			}
+			return new AdaptiveLimiter(this);
+		}
+		
+	}
+	
+}
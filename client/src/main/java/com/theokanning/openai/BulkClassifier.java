@@ -0,0 +1,82 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.classification.ClassificationRequest;
+import com.theokanning.openai.classification.ClassificationResult;
+import com.theokanning.openai.classification.ClassificationStats;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifies a stream of queries against a fixed set of examples and labels.
+ * <p>
+ * The template is serialized once as a {@link RequestTemplate}, so each request only encodes its query. Up to {@code concurrency} requests are
+ * in flight at a time, and queries are only pulled from the source as calls finish, so streams of any length
+ * run in constant memory. A failed query is reported in its {@link BulkResult} without stopping the others,
+ * and every result is recorded in {@link #getStats()}.
+ */
+public class BulkClassifier {
+	
+	private final OpenAiService service;
+	
+	private final RequestTemplate<ClassificationRequest> template;
+	
+	private final int concurrency;
+	
+	private final ClassificationStats stats = new ClassificationStats();
+	
+	/**
+	 * @param template    the request every query is sent with, its own query is ignored
+	 * @param concurrency the most requests in flight at the same time
+	 */
+	public BulkClassifier(OpenAiService service, ClassificationRequest template, int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+		}
+		this.service = service;
+		this.template = service.classificationTemplate(template);
+		this.concurrency = concurrency;
+	}
+	
+	/**
+	 * @see #classify(Flowable, boolean)
+	 */
+	public Flowable<BulkResult<String, ClassificationResult>> classify(Iterable<String> queries, boolean ordered) {
+		return classify(Flowable.fromIterable(queries), ordered);
+	}
+	
+	/**
+	 * Classifies each query when subscribed to. {@link BulkResult#getIndex()} is the position of the query in the source.
+	 *
+	 * @param ordered whether results are emitted in query order, otherwise each is emitted as soon as it is done.
+	 *                In order, a slow query holds back the results after it, though their calls still run.
+	 */
+	public Flowable<BulkResult<String, ClassificationResult>> classify(Flowable<String> queries, boolean ordered) {
+		return Flowable.defer(() -> {
+			AtomicInteger index = new AtomicInteger();
+			Flowable<Single<BulkResult<String, ClassificationResult>>> calls = queries.map(query -> classify(index.getAndIncrement(), query));
+			return ordered
+					? calls.concatMapEager(Single::toFlowable, concurrency, 1)
+					: calls.flatMapSingle(call -> call, false, concurrency);
+		});
+	}
+	
+	/**
+	 * The label distribution and confidence of all results so far, over every call to {@code classify}.
+	 */
+	public ClassificationStats getStats() {
+		return stats;
+	}
+	
+	private Single<BulkResult<String, ClassificationResult>> classify(int index, String query) {
+		return Single.defer(() -> service.classificationRx(template, query))
+				.doOnSuccess(stats::record)
+				.map(result -> BulkResult.<String, ClassificationResult>success(index, query, result))
+				.onErrorReturn(error -> {
+					stats.recordFailure();
+					return BulkResult.failure(index, query, error);
+				});
+	}
+	
+}
@@ -0,0 +1,69 @@
+package com.theokanning.openai;
+
+/**
+ * The outcome of one item of a bulk operation, either a result or the error it failed with.
+ * A failed item doesn't stop the rest of the operation.
+ *
+ * @param <I> the input of the item, e.g. a file path or id
+ * @param <R> the result of the item
+ */
+public final class BulkResult<I, R> {
+	
+	private final int index;
+	
+	private final I input;
+	
+	private final R result;
+	
+	private final Throwable error;
+	
+	private BulkResult(int index, I input, R result, Throwable error) {
+		this.index = index;
+		this.input = input;
+		this.result = result;
+		this.error = error;
+	}
+	
+	static <I, R> BulkResult<I, R> success(int index, I input, R result) {
+		return new BulkResult<>(index, input, result, null);
+	}
+	
+	static <I, R> BulkResult<I, R> failure(int index, I input, Throwable error) {
+		return new BulkResult<>(index, input, null, error);
+	}
+	
+	/**
+	 * The position of the input in the list passed to the bulk operation.
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	public I getInput() {
+		return input;
+	}
+	
+	/**
+	 * @return the result, or null if the item failed
+	 */
+	public R getResult() {
+		return result;
+	}
+	
+	/**
+	 * @return the error the item failed with after any retries, or null if it succeeded
+	 */
+	public Throwable getError() {
+		return error;
+	}
+	
+	public boolean isSuccess() {
+		return error == null;
+	}
+	
+	@Override
+	public String toString() {
+		return "BulkResult(index=" + index + ", input=" + input + (isSuccess() ? ", result=" + result : ", error=" + error) + ")";
+	}
+	
+}
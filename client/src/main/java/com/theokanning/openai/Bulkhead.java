@@ -0,0 +1,68 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.TransportGauges;
+import okhttp3.Dispatcher;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A group of endpoints with its own dispatcher, so that its calls have their own concurrency limit and queue
+ * and can't hold up the calls of other endpoints. The connection pool and threads are shared with the rest of the service.
+ *
+ * @see OpenAiServiceBuilder#bulkhead(String, int, Endpoint...)
+ */
+public class Bulkhead {
+	
+	private final String name;
+	
+	private final Set<Endpoint> endpoints;
+	
+	private final Dispatcher dispatcher;
+	
+	private final TransportGauges gauges;
+	
+	Bulkhead(String name, Set<Endpoint> endpoints, Dispatcher dispatcher, TransportGauges gauges) {
+		this.name = name;
+		this.endpoints = Collections.unmodifiableSet(endpoints);
+		this.dispatcher = dispatcher;
+		this.gauges = gauges;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public Set<Endpoint> getEndpoints() {
+		return endpoints;
+	}
+	
+	/**
+	 * The maximum number of concurrent calls of the group, further calls wait in its queue.
+	 */
+	public int getMaxRequests() {
+		return dispatcher.getMaxRequests();
+	}
+	
+	/**
+	 * Changes the concurrency limit, queued calls start right away if it was raised.
+	 */
+	public void setMaxRequests(int maxRequests) {
+		dispatcher.setMaxRequestsPerHost(maxRequests);
+		dispatcher.setMaxRequests(maxRequests);
+	}
+	
+	/**
+	 * Running and queued calls of the group, and the shared connection pool.
+	 */
+	public TransportGauges getGauges() {
+		return gauges;
+	}
+	
+	@Override
+	public String toString() {
+		return "Bulkhead(name=" + name + ", endpoints=" + endpoints + ", maxRequests=" + getMaxRequests()
+				+ ", running=" + gauges.getRunningCalls() + ", queued=" + gauges.getQueuedCalls() + ")";
+	}
+	
+}
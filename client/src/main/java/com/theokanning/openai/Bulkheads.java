@@ -0,0 +1,61 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.TransportGauges;
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import retrofit2.Invocation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sends each call through the client of its endpoint's {@link Bulkhead}, or through the shared client if it has none.
+ * <p>
+ * The bulkhead clients are derived from the shared one, so they keep its interceptors, event listeners and connection pool,
+ * and their dispatchers run calls on the shared dispatcher's executor. Only the limits and queues are separate.
+ */
+final class Bulkheads implements Call.Factory {
+	
+	private final OkHttpClient client;
+	
+	private final Map<Endpoint, OkHttpClient> clients = new EnumMap<>(Endpoint.class);
+	
+	private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+	
+	/**
+	 * @param groups the endpoints and concurrency limit of each bulkhead, by name
+	 */
+	Bulkheads(OkHttpClient client, Map<String, Set<Endpoint>> groups, Map<String, Integer> limits) {
+		this.client = client;
+		groups.forEach((name, endpoints) -> {
+			Dispatcher dispatcher = new Dispatcher(client.dispatcher().executorService());
+			dispatcher.setMaxRequests(limits.get(name));
+			dispatcher.setMaxRequestsPerHost(limits.get(name));
+			OkHttpClient bulkheadClient = client.newBuilder().dispatcher(dispatcher).build();
+			for (Endpoint endpoint : endpoints) {
+				clients.put(endpoint, bulkheadClient);
+			}
+			bulkheads.put(name, new Bulkhead(name, EnumSet.copyOf(endpoints), dispatcher,
+					new TransportGauges(client.connectionPool(), dispatcher)));
+		});
+	}
+	
+	@Override
+	public Call newCall(Request request) {
+		Invocation invocation = request.tag(Invocation.class);
+		Endpoint endpoint = invocation != null ? Endpoint.forMethod(invocation.method()) : null;
+		OkHttpClient bulkheadClient = endpoint != null ? clients.get(endpoint) : null;
+		return (bulkheadClient != null ? bulkheadClient : client).newCall(request);
+	}
+	
+	Map<String, Bulkhead> bulkheads() {
+		return Collections.unmodifiableMap(bulkheads);
+	}
+	
+}
@@ -0,0 +1,90 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.MetricsRecorder;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Applies the per-endpoint policies configured on {@link OpenAiServiceBuilder} to calls made through {@link OpenAiApi}.
+ * Shared by {@link OpenAiService} and its {@link FileService}.
+ */
+final class CallExecutor {
+	
+	private final RetryPolicy defaultRetryPolicy;
+	
+	private final Map<Endpoint, RetryPolicy> retryPolicies;
+	
+	private final MetricsRecorder metrics;
+	
+	private final HedgePolicy hedgePolicy;
+	
+	private final RateLimiter rateLimiter;
+	
+	CallExecutor(RetryPolicy defaultRetryPolicy, Map<Endpoint, RetryPolicy> retryPolicies, MetricsRecorder metrics,
+			HedgePolicy hedgePolicy, RateLimiter rateLimiter) {
+		this.defaultRetryPolicy = defaultRetryPolicy;
+		this.retryPolicies = retryPolicies.isEmpty() ? new EnumMap<>(Endpoint.class) : new EnumMap<>(retryPolicies);
+		this.metrics = metrics;
+		this.hedgePolicy = hedgePolicy;
+		this.rateLimiter = rateLimiter;
+	}
+	
+	/**
+	 * An executor that makes each call exactly once.
+	 */
+	static CallExecutor direct() {
+		return new CallExecutor(RetryPolicy.none(), new EnumMap<>(Endpoint.class), MetricsRecorder.NONE, null, null);
+	}
+	
+	RetryPolicy retryPolicy(Endpoint endpoint) {
+		return retryPolicies.getOrDefault(endpoint, defaultRetryPolicy);
+	}
+	
+	/**
+	 * Executes a call that doesn't use any tokens of the rate limit.
+	 */
+	<T> Single<T> execute(Endpoint endpoint, Single<T> call) {
+		return execute(endpoint, call, endpoint.isIdempotent(), 0);
+	}
+	
+	/**
+	 * @param deterministic whether the call can be hedged even though the endpoint isn't idempotent, because sending it twice
+	 *                      gives the same result, e.g. a completion with a temperature of 0
+	 * @param tokens        the estimated tokens the call takes from the rate limit, see {@link RateLimiter#estimateTokens(Object)}
+	 */
+	<T> Single<T> execute(Endpoint endpoint, Single<T> call, boolean deterministic, int tokens) {
+		return retryPolicy(endpoint).apply(endpoint, hedged(endpoint, limited(call, tokens), deterministic), metrics);
+	}
+	
+	/**
+	 * Executes the call with the given retry policy instead of the endpoint's, or with the endpoint's if it is null.
+	 */
+	<T> Single<T> execute(Endpoint endpoint, Single<T> call, RetryPolicy retryPolicy) {
+		return (retryPolicy != null ? retryPolicy : retryPolicy(endpoint)).apply(endpoint, hedged(endpoint, limited(call, 0), endpoint.isIdempotent()), metrics);
+	}
+	
+	/**
+	 * Waits for rate limit quota before the stream is opened.
+	 */
+	<T> Flowable<T> limited(Flowable<T> call, int tokens) {
+		return rateLimiter != null ? rateLimiter.limit(tokens, call) : call;
+	}
+	
+	/**
+	 * Every attempt and hedge is a request of its own, so each takes its own quota.
+	 */
+	private <T> Single<T> limited(Single<T> call, int tokens) {
+		return rateLimiter != null ? rateLimiter.limit(tokens, call) : call;
+	}
+	
+	/**
+	 * Each attempt is hedged on its own, so a retried call can be hedged again.
+	 */
+	private <T> Single<T> hedged(Endpoint endpoint, Single<T> call, boolean hedgeable) {
+		return hedgePolicy != null && hedgeable ? hedgePolicy.apply(endpoint, call, metrics) : call;
+	}
+	
+}
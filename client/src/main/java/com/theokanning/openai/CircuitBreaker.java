@@ -0,0 +1,341 @@
+package com.theokanning.openai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stops sending calls to an endpoint that keeps failing or answering slowly, so that callers fail fast instead of
+ * queueing behind it, and the endpoint gets time to recover.
+ * <p>
+ * Each endpoint has its own circuit. While it is closed, the outcomes of the last {@link Builder#windowSize} calls are kept,
+ * and once at least {@link Builder#minCalls} have been seen the circuit opens if the share of failures or of slow calls
+ * reaches its threshold. A failure is an IOException or a 408, 429 or 5xx response, a slow call is one whose response
+ * headers took longer than {@link Builder#slowCallDuration}. Cancelled calls and calls failed by the client's own
+ * {@link RateLimitExceededException} don't count.
+ * <p>
+ * While open, calls fail with a {@link CircuitBreakerOpenException} without being sent. After {@link Builder#openDuration}
+ * the circuit is half open and lets {@link Builder#halfOpenCalls} trial calls through, then closes or opens again
+ * depending on their outcomes. Every state change is reported to the {@link CircuitBreakerListener}s.
+ *
+ * @see OpenAiServiceBuilder#circuitBreaker(CircuitBreaker)
+ * @see CircuitBreakerInterceptor
+ */
+public class CircuitBreaker {
+	
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+	
+	private final double failureRateThreshold;
+	
+	private final double slowCallRateThreshold;
+	
+	private final long slowCallNanos;
+	
+	private final int windowSize;
+	
+	private final int minCalls;
+	
+	private final long openNanos;
+	
+	private final int halfOpenCalls;
+	
+	private final List<CircuitBreakerListener> listeners;
+	
+	private final Map<Endpoint, Circuit> circuits = new EnumMap<>(Endpoint.class);
+	
+	private CircuitBreaker(Builder builder) {
+		this.failureRateThreshold = builder.failureRateThreshold;
+		this.slowCallRateThreshold = builder.slowCallRateThreshold;
+		this.slowCallNanos = builder.slowCallDuration.toNanos();
+		this.windowSize = builder.windowSize;
+		this.minCalls = builder.minCalls;
+		this.openNanos = builder.openDuration.toNanos();
+		this.halfOpenCalls = builder.halfOpenCalls;
+		this.listeners = new ArrayList<>(builder.listeners);
+		for (Endpoint endpoint : Endpoint.values()) {
+			circuits.put(endpoint, new Circuit(endpoint));
+		}
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	public State getState(Endpoint endpoint) {
+		return circuits.get(endpoint).state();
+	}
+	
+	/**
+	 * Closes the endpoint's circuit and forgets the outcomes seen so far.
+	 */
+	public void reset(Endpoint endpoint) {
+		circuits.get(endpoint).transition(State.CLOSED);
+	}
+	
+	/**
+	 * @return whether a call to the endpoint may be sent now, which in the half open state takes one of the trial calls
+	 */
+	boolean tryAcquire(Endpoint endpoint) {
+		return circuits.get(endpoint).tryAcquire();
+	}
+	
+	/**
+	 * Records the outcome of a call that was allowed by {@link #tryAcquire}.
+	 */
+	void record(Endpoint endpoint, boolean failure, long latencyNanos) {
+		circuits.get(endpoint).record(failure, latencyNanos >= slowCallNanos);
+	}
+	
+	/**
+	 * Gives back a call allowed by {@link #tryAcquire} that was cancelled, without recording an outcome.
+	 */
+	void release(Endpoint endpoint) {
+		circuits.get(endpoint).release();
+	}
+	
+	static boolean isFailure(int statusCode) {
+		return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+	}
+	
+	/**
+	 * The state of one endpoint. The window is a ring of outcomes, with the failing and slow ones counted as they
+	 * enter and leave it.
+	 */
+	private final class Circuit {
+		
+		private static final byte FAILED = 1;
+		
+		private static final byte SLOW = 2;
+		
+		private final Endpoint endpoint;
+		
+		private final byte[] window = new byte[windowSize];
+		
+		private State state = State.CLOSED;
+		
+		private int size;
+		
+		private int next;
+		
+		private int failures;
+		
+		private int slow;
+		
+		private long openedAtNanos;
+		
+		private int permits;
+		
+		Circuit(Endpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+		
+		synchronized State state() {
+			if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+				return State.HALF_OPEN;
+			}
+			return state;
+		}
+		
+		boolean tryAcquire() {
+			State previous;
+			synchronized (this) {
+				previous = state;
+				if (state == State.CLOSED) {
+					return true;
+				}
+				if (state == State.OPEN) {
+					if (System.nanoTime() - openedAtNanos < openNanos) {
+						return false;
+					}
+					enter(State.HALF_OPEN);
+				}
+				if (permits == 0) {
+					return false;
+				}
+				permits--;
+			}
+			if (previous != State.HALF_OPEN) {
+				publish(previous, State.HALF_OPEN);
+			}
+			return true;
+		}
+		
+		synchronized void release() {
+			if (state == State.HALF_OPEN) {
+				permits++;
+			}
+		}
+		
+		void record(boolean failed, boolean slowCall) {
+			State previous;
+			State current;
+			synchronized (this) {
+				previous = state;
+				if (state == State.OPEN) {
+					// a call that was sent before the circuit opened
+					return;
+				}
+				if (size == window.length) {
+					byte evicted = window[next];
+					failures -= evicted & FAILED;
+					slow -= (evicted & SLOW) >> 1;
+				} else {
+					size++;
+				}
+				window[next] = (byte) ((failed ? FAILED : 0) | (slowCall ? SLOW : 0));
+				next = (next + 1) % window.length;
+				failures += failed ? 1 : 0;
+				slow += slowCall ? 1 : 0;
+				
+				int needed = state == State.HALF_OPEN ? halfOpenCalls : minCalls;
+				if (size >= needed) {
+					boolean trip = failures >= failureRateThreshold * size || slow >= slowCallRateThreshold * size;
+					if (trip) {
+						enter(State.OPEN);
+					} else if (state == State.HALF_OPEN) {
+						enter(State.CLOSED);
+					}
+				}
+				current = state;
+			}
+			if (previous != current) {
+				publish(previous, current);
+			}
+		}
+		
+		void transition(State target) {
+			State previous;
+			synchronized (this) {
+				previous = state;
+				enter(target);
+			}
+			if (previous != target) {
+				publish(previous, target);
+			}
+		}
+		
+		/**
+		 * Switches state and starts a new window, must hold the lock.
+		 */
+		private void enter(State target) {
+			state = target;
+			size = 0;
+			next = 0;
+			failures = 0;
+			slow = 0;
+			if (target == State.OPEN) {
+				openedAtNanos = System.nanoTime();
+			}
+			permits = target == State.HALF_OPEN ? halfOpenCalls : 0;
+		}
+		
+		private void publish(State from, State to) {
+			for (CircuitBreakerListener listener : listeners) {
+				listener.onStateChange(endpoint, from, to);
+			}
+		}
+		
+	}
+	
+	public static class Builder {
+		
+		private double failureRateThreshold = 0.5;
+		
+		private double slowCallRateThreshold = 1;
+		
+		private Duration slowCallDuration = Duration.ofSeconds(60);
+		
+		private int windowSize = 100;
+		
+		private int minCalls = 20;
+		
+		private Duration openDuration = Duration.ofSeconds(30);
+		
+		private int halfOpenCalls = 5;
+		
+		private final List<CircuitBreakerListener> listeners = new ArrayList<>();
+		
+		Builder() {
+		}
+		
+		/**
+		 * The share of failed calls in the window that opens the circuit, between 0 and 1. Defaults to 0.5.
+		 */
+		public Builder failureRateThreshold(double failureRateThreshold) {
+			this.failureRateThreshold = failureRateThreshold;
+			return this;
+		}
+		
+		/**
+		 * The share of slow calls in the window that opens the circuit, between 0 and 1. Defaults to 1, only opening when every call is slow.
+		 */
+		public Builder slowCallRateThreshold(double slowCallRateThreshold) {
+			this.slowCallRateThreshold = slowCallRateThreshold;
+			return this;
+		}
+		
+		/**
+		 * How long a call may wait for its response headers before it counts as slow. Defaults to 60 seconds.
+		 */
+		public Builder slowCallDuration(Duration slowCallDuration) {
+			this.slowCallDuration = slowCallDuration;
+			return this;
+		}
+		
+		/**
+		 * The number of most recent calls the rates are computed over. Defaults to 100.
+		 */
+		public Builder windowSize(int windowSize) {
+			this.windowSize = windowSize;
+			return this;
+		}
+		
+		/**
+		 * The number of calls needed in the window before the circuit can open. Defaults to 20.
+		 */
+		public Builder minCalls(int minCalls) {
+			this.minCalls = minCalls;
+			return this;
+		}
+		
+		/**
+		 * How long the circuit stays open before trial calls are let through. Defaults to 30 seconds.
+		 */
+		public Builder openDuration(Duration openDuration) {
+			this.openDuration = openDuration;
+			return this;
+		}
+		
+		/**
+		 * The number of trial calls in the half open state. Defaults to 5.
+		 */
+		public Builder halfOpenCalls(int halfOpenCalls) {
+			this.halfOpenCalls = halfOpenCalls;
+			return this;
+		}
+		
+		/**
+		 * Adds a listener that is told of every state change, on the thread of the call that caused it.
+		 */
+		public Builder listener(CircuitBreakerListener listener) {
+			this.listeners.add(listener);
+			return this;
+		}
+		
+		public CircuitBreaker build() {
+			if (failureRateThreshold <= 0 || failureRateThreshold > 1 || slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+				throw new IllegalArgumentException("Thresholds must be above 0 and at most 1");
+			}
+			if (windowSize < 1 || minCalls < 1 || minCalls > windowSize || halfOpenCalls < 1 || halfOpenCalls > windowSize) {
+				throw new IllegalArgumentException("minCalls and halfOpenCalls must be between 1 and windowSize");
+			}
+			return new CircuitBreaker(this);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,56 @@
+package com.theokanning.openai;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+
+/**
+ * OkHttp Interceptor that fails requests to an endpoint whose {@link CircuitBreaker} circuit is open,
+ * and records the outcome of the others.
+ * <p>
+ * Only calls made through {@link OpenAiApi} are affected, their endpoint is found from the {@link Invocation}
+ * Retrofit attaches to each request. The latency is measured until the response headers arrive, so streams count as
+ * fast once they have started.
+ * <p>
+ * Add it after any {@link RateLimitInterceptor}, so that the time spent waiting for quota isn't taken as latency of the
+ * endpoint. A {@link RateLimitExceededException} is the client's own throttling and isn't recorded either way.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+	
+	private final CircuitBreaker circuitBreaker;
+	
+	public CircuitBreakerInterceptor(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+	
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		Invocation invocation = request.tag(Invocation.class);
+		Endpoint endpoint = invocation != null ? Endpoint.forMethod(invocation.method()) : null;
+		if (endpoint == null) {
+			return chain.proceed(request);
+		}
+		if (!circuitBreaker.tryAcquire(endpoint)) {
+			throw new CircuitBreakerOpenException(endpoint);
+		}
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = chain.proceed(request);
+		} catch (IOException | RuntimeException e) {
+			if (chain.call().isCanceled() || e instanceof RateLimitExceededException) {
+				circuitBreaker.release(endpoint);
+			} else {
+				circuitBreaker.record(endpoint, true, System.nanoTime() - start);
+			}
+			throw e;
+		}
+		circuitBreaker.record(endpoint, CircuitBreaker.isFailure(response.code()), System.nanoTime() - start);
+		return response;
+	}
+	
+}
@@ -0,0 +1,11 @@
+package com.theokanning.openai;
+
+/**
+ * Told when the circuit of an endpoint changes state, see {@link CircuitBreaker.Builder#listener(CircuitBreakerListener)}.
+ * Called on the thread of the call that caused the change, so it should return quickly.
+ */
+public interface CircuitBreakerListener {
+	
+	void onStateChange(Endpoint endpoint, CircuitBreaker.State from, CircuitBreaker.State to);
+	
+}
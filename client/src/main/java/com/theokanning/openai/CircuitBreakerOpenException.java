@@ -0,0 +1,24 @@
+package com.theokanning.openai;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link CircuitBreakerInterceptor} instead of sending a request to an endpoint whose circuit is open.
+ * It is not retried by a {@link RetryPolicy}.
+ */
+public class CircuitBreakerOpenException extends IOException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final Endpoint endpoint;
+	
+	public CircuitBreakerOpenException(Endpoint endpoint) {
+		super("Circuit open for " + endpoint);
+		this.endpoint = endpoint;
+	}
+	
+	public Endpoint getEndpoint() {
+		return endpoint;
+	}
+	
+}
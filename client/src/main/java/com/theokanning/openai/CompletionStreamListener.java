@@ -0,0 +1,30 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.completion.CompletionChoice;
+
+/**
+ * Callback for streamed completions, see {@link OpenAiService#streamCompletion(String, com.theokanning.openai.completion.CompletionRequest, CompletionStreamListener)}.
+ * <p>
+ * Callbacks are invoked on an OkHttp dispatcher thread as each chunk arrives, so they should return quickly.
+ */
+public interface CompletionStreamListener {
+	
+	/**
+	 * Called for each partial choice. The text only contains the tokens generated since the previous chunk,
+	 * and {@link CompletionChoice#getIndex()} identifies which choice it belongs to when n &gt; 1.
+	 */
+	void onChoice(CompletionChoice choice);
+	
+	/**
+	 * Called once the stream has finished.
+	 */
+	default void onComplete() {
+	}
+	
+	/**
+	 * Called if the request fails or the stream is interrupted. No further callbacks are made afterwards.
+	 */
+	default void onError(Throwable error) {
+	}
+	
+}
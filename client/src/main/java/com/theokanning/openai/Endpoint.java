@@ -0,0 +1,68 @@
+package com.theokanning.openai;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The OpenAI api endpoints, one per {@link OpenAiApi} method, used to configure behaviour per endpoint.
+ */
+public enum Endpoint {
+	
+	GET_ENGINES("getEngines", true),
+	GET_ENGINE("getEngine", true),
+	CREATE_COMPLETION("createCompletion", false),
+	SEARCH("search", false),
+	ANSWER("answer", false),
+	UPLOAD_FILE("uploadFile", false),
+	GET_FILE("getFile", true),
+	LIST_FILES("listFiles", true),
+	DELETE_FILE("deleteFile", false),
+	CLASSIFICATION("classification", false),
+	CREATE_FINE_TUNE("fineTune", false),
+	LIST_FINE_TUNES("listFineTunes", true),
+	GET_FINE_TUNE("getFineTune", true),
+	CANCEL_FINE_TUNE("cancelFineTune", false),
+	LIST_FINE_TUNE_EVENTS("listFineTuneEvents", true);
+	
+	private static final Map<String, Endpoint> BY_METHOD = new HashMap<>();
+	
+	static {
+		for (Endpoint endpoint : values()) {
+			BY_METHOD.put(endpoint.methodName, endpoint);
+		}
+		BY_METHOD.put("createCompletionStream", CREATE_COMPLETION);
+		BY_METHOD.put("streamFineTuneEvents", LIST_FINE_TUNE_EVENTS);
+	}
+	
+	private final String methodName;
+	
+	private final boolean idempotent;
+	
+	Endpoint(String methodName, boolean idempotent) {
+		this.methodName = methodName;
+		this.idempotent = idempotent;
+	}
+	
+	/**
+	 * The name of the {@link OpenAiApi} method calling this endpoint.
+	 */
+	public String getMethodName() {
+		return methodName;
+	}
+	
+	/**
+	 * Whether repeating a call has no further effect, which makes it safe to retry.
+	 */
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+	
+	/**
+	 * @return the endpoint called by the given {@link OpenAiApi} method, or null for any other method
+	 */
+	public static Endpoint forMethod(Method method) {
+		return method.getDeclaringClass() == OpenAiApi.class ? BY_METHOD.get(method.getName()) : null;
+	}
+	
+}
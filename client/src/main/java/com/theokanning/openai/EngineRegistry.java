@@ -0,0 +1,179 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.engine.Engine;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the engine list in memory, so that engine ids can be looked up and validated without a round trip.
+ * <p>
+ * The list is loaded on the first lookup. After {@code ttl} lookups are still answered from the stale list while it is
+ * reloaded in the background, and only the very first load is waited for. Concurrent lookups share a single load.
+ * An id missing from the list triggers a reload before it is reported as unknown, at most every 10 seconds,
+ * so that new engines are picked up. Failed loads are retried after the same delay.
+ *
+ * @see OpenAiService#engineRegistry
+ * @see OpenAiServiceBuilder#validateEngineIds(boolean)
+ */
+public class EngineRegistry {
+	
+	static final long RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+	
+	private final Single<List<Engine>> load;
+	
+	private final long ttlNanos;
+	
+	private final AtomicReference<Single<Catalogue>> loading = new AtomicReference<>();
+	
+	private volatile Catalogue catalogue;
+	
+	private volatile long nextAttemptNanos = System.nanoTime();
+	
+	private volatile Throwable lastError;
+	
+	/**
+	 * @param load loads the engine list, subscribed to once per load
+	 * @param ttl  how long a loaded list is served before it is reloaded in the background
+	 */
+	EngineRegistry(Single<List<Engine>> load, Duration ttl) {
+		this.load = load;
+		this.ttlNanos = ttl.toNanos();
+	}
+	
+	/**
+	 * @see OpenAiService#getEngines()
+	 */
+	public List<Engine> getEngines() {
+		return getEnginesRx().blockingGet();
+	}
+	
+	/**
+	 * @see #getEngines()
+	 */
+	public Single<List<Engine>> getEnginesRx() {
+		return current().map(catalogue -> catalogue.engines);
+	}
+	
+	/**
+	 * @return the engine, or null if there is no engine with the id
+	 */
+	public Engine getEngine(String engineId) {
+		return getEngineRx(engineId).blockingGet();
+	}
+	
+	/**
+	 * @see #getEngine(String)
+	 */
+	public Maybe<Engine> getEngineRx(String engineId) {
+		return current().flatMapMaybe(catalogue -> {
+			Engine engine = catalogue.byId.get(engineId);
+			if (engine != null) {
+				return Maybe.just(engine);
+			}
+			long now = System.nanoTime();
+			if (now - catalogue.loadedAtNanos < RETRY_DELAY_NANOS || now - nextAttemptNanos < 0) {
+				return Maybe.empty();
+			}
+			return reload().flatMapMaybe(reloaded -> Maybe.fromCallable(() -> reloaded.byId.get(engineId)));
+		});
+	}
+	
+	public boolean isKnown(String engineId) {
+		return getEngine(engineId) != null;
+	}
+	
+	/**
+	 * Drops the loaded list, so that the next lookup waits for a fresh one.
+	 */
+	public void invalidate() {
+		catalogue = null;
+		nextAttemptNanos = System.nanoTime();
+	}
+	
+	/**
+	 * Completes if the engine exists, or fails with an {@link UnknownEngineException} if it doesn't.
+	 * Also completes if the list can't be loaded, so that an unavailable engine list doesn't hold up requests.
+	 */
+	Completable check(String engineId) {
+		return getEngineRx(engineId)
+				.switchIfEmpty(Single.error(() -> new UnknownEngineException(engineId)))
+				.ignoreElement()
+				.onErrorComplete(error -> !(error instanceof UnknownEngineException));
+	}
+	
+	private Single<Catalogue> current() {
+		return Single.defer(() -> {
+			// read before the catalogue, which a finished load sets before it clears the reference
+			Single<Catalogue> inFlight = loading.get();
+			Catalogue current = catalogue;
+			long now = System.nanoTime();
+			if (current == null) {
+				if (inFlight != null) {
+					return inFlight;
+				}
+				Throwable error = lastError;
+				if (error != null && now - nextAttemptNanos < 0) {
+					return Single.error(error);
+				}
+				return reload();
+			}
+			if (now - current.loadedAtNanos >= ttlNanos && now - nextAttemptNanos >= 0) {
+				reload().subscribe(reloaded -> {
+				}, error -> {
+				});
+			}
+			return Single.just(current);
+		});
+	}
+	
+	/**
+	 * Starts a load unless one is in flight, and returns the one that is.
+	 */
+	private Single<Catalogue> reload() {
+		Single<Catalogue> inFlight = loading.get();
+		if (inFlight != null) {
+			return inFlight;
+		}
+		Single<Catalogue> reload = load
+				.map(Catalogue::new)
+				.doOnSuccess(loaded -> {
+					catalogue = loaded;
+					lastError = null;
+					loading.set(null);
+				})
+				.doOnError(error -> {
+					lastError = error;
+					nextAttemptNanos = System.nanoTime() + RETRY_DELAY_NANOS;
+					loading.set(null);
+				})
+				.cache();
+		return loading.compareAndSet(null, reload) ? reload : reload();
+	}
+	
+	private static final class Catalogue {
+		
+		private final List<Engine> engines;
+		
+		private final Map<String, Engine> byId = new HashMap<>();
+		
+		private final long loadedAtNanos = System.nanoTime();
+		
+		private Catalogue(List<Engine> engines) {
+			this.engines = Collections.unmodifiableList(engines);
+			for (Engine engine : engines) {
+				byId.put(engine.getId(), engine);
+			}
+		}
+		
+	}
+	
+}
@@ -1,59 +1,333 @@
 package com.theokanning.openai;
 
+import com.theokanning.openai.files.DatasetProducer;
+import com.theokanning.openai.files.DatasetRecord;
+import com.theokanning.openai.files.DatasetWriter;
 import com.theokanning.openai.files.DeleteResult;
 import com.theokanning.openai.files.FileResult;
 import com.theokanning.openai.files.Purpose;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 
 import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Client for the file endpoints, with the same blocking, {@code Rx} and {@code Async} flavours as {@link OpenAiService}.
+ */
 public class FileService {
 	
 	OpenAiApi api;
 	
+	final CallExecutor executor;
+	
 	public FileService(OpenAiApi api) {
+		this(api, CallExecutor.direct());
+	}
+	
+	FileService(OpenAiApi api, CallExecutor executor) {
 		this.api = api;
+		this.executor = executor;
 	}
 	
 	public FileResult uploadFile(File file, Purpose purpose) {
-		RequestBody body = RequestBody.create(
-				MediaType.parse("multipart/form-data"),
-				file
-		);
-		
-		MultipartBody.Part fileBody = MultipartBody.Part.createFormData("file", file.getName(), body);
-		
-		RequestBody purposeBody = RequestBody.create(MultipartBody.FORM, purpose.name);
-		
-		return api.uploadFile(purposeBody, fileBody).blockingGet();
+		return uploadFileRx(file, purpose).blockingGet();
+	}
+	
+	public Single<FileResult> uploadFileRx(File file, Purpose purpose) {
+		return uploadFileRx(file.toPath(), purpose, null);
+	}
+	
+	public CompletableFuture<FileResult> uploadFileAsync(File file, Purpose purpose) {
+		return Futures.toFuture(uploadFileRx(file, purpose));
+	}
+	
+	/**
+	 * Uploads the file in chunks straight from disk, without reading it into memory.
+	 *
+	 * @param listener notified as the file is sent, may be null
+	 */
+	public FileResult uploadFile(Path path, Purpose purpose, UploadProgressListener listener) {
+		return uploadFileRx(path, purpose, listener).blockingGet();
+	}
+	
+	/**
+	 * @see #uploadFile(Path, Purpose, UploadProgressListener)
+	 */
+	public Single<FileResult> uploadFileRx(Path path, Purpose purpose, UploadProgressListener listener) {
+		return upload(UploadBodies.of(path, listener), path.getFileName().toString(), purpose);
+	}
+	
+	/**
+	 * @see #uploadFile(Path, Purpose, UploadProgressListener)
+	 */
+	public CompletableFuture<FileResult> uploadFileAsync(Path path, Purpose purpose, UploadProgressListener listener) {
+		return Futures.toFuture(uploadFileRx(path, purpose, listener));
+	}
+	
+	/**
+	 * Uploads the contents of the stream, reading it in chunks until it ends. The stream is not closed.
+	 * <p>
+	 * A stream can only be read once, so the upload is never retried and the returned single can only be subscribed to once.
+	 *
+	 * @param contentLength the number of bytes in the stream, or -1 if unknown, in which case the upload uses chunked transfer encoding
+	 * @param listener      notified as the stream is sent, may be null
+	 */
+	public FileResult uploadFile(InputStream in, long contentLength, String fileName, Purpose purpose, UploadProgressListener listener) {
+		return uploadFileRx(in, contentLength, fileName, purpose, listener).blockingGet();
+	}
+	
+	/**
+	 * @see #uploadFile(InputStream, long, String, Purpose, UploadProgressListener)
+	 */
+	public Single<FileResult> uploadFileRx(InputStream in, long contentLength, String fileName, Purpose purpose, UploadProgressListener listener) {
+		return uploadOnce(UploadBodies.of(in, contentLength, listener), fileName, purpose);
+	}
+	
+	/**
+	 * @see #uploadFile(InputStream, long, String, Purpose, UploadProgressListener)
+	 */
+	public CompletableFuture<FileResult> uploadFileAsync(InputStream in, long contentLength, String fileName, Purpose purpose, UploadProgressListener listener) {
+		return Futures.toFuture(uploadFileRx(in, contentLength, fileName, purpose, listener));
+	}
+	
+	/**
+	 * Uploads the contents of the channel, reading it in chunks until it ends. The channel is not closed.
+	 * A {@link java.nio.channels.FileChannel} is transferred from its current position without a heap buffer.
+	 * <p>
+	 * A channel can only be read once, so the upload is never retried and the returned single can only be subscribed to once.
+	 *
+	 * @param contentLength the number of bytes in the channel, or -1 if unknown, in which case the upload uses chunked transfer encoding
+	 * @param listener      notified as the channel is sent, may be null
+	 */
+	public FileResult uploadFile(ReadableByteChannel channel, long contentLength, String fileName, Purpose purpose, UploadProgressListener listener) {
+		return uploadFileRx(channel, contentLength, fileName, purpose, listener).blockingGet();
+	}
+	
+	/**
+	 * @see #uploadFile(ReadableByteChannel, long, String, Purpose, UploadProgressListener)
+	 */
+	public Single<FileResult> uploadFileRx(ReadableByteChannel channel, long contentLength, String fileName, Purpose purpose, UploadProgressListener listener) {
+		return uploadOnce(UploadBodies.of(channel, contentLength, listener), fileName, purpose);
+	}
+	
+	/**
+	 * @see #uploadFile(ReadableByteChannel, long, String, Purpose, UploadProgressListener)
+	 */
+	public CompletableFuture<FileResult> uploadFileAsync(ReadableByteChannel channel, long contentLength, String fileName, Purpose purpose, UploadProgressListener listener) {
+		return Futures.toFuture(uploadFileRx(channel, contentLength, fileName, purpose, listener));
+	}
+	
+	/**
+	 * Uploads a JSONL dataset while the producer writes it, without holding the records in memory or spilling them to disk.
+	 * The producer is called once, on the OkHttp thread sending the request, and the upload is never retried.
+	 * If the producer throws, the upload fails with an {@link java.io.IOException} caused by it.
+	 * <p>
+	 * To be able to retry the upload, write the dataset with {@link DatasetWriter#toTempFile()} and upload the file instead.
+	 */
+	public <T extends DatasetRecord> FileResult uploadDataset(String fileName, Purpose purpose, DatasetProducer<T> producer) {
+		return uploadDatasetRx(fileName, purpose, producer).blockingGet();
+	}
+	
+	/**
+	 * @see #uploadDataset(String, Purpose, DatasetProducer)
+	 */
+	public <T extends DatasetRecord> Single<FileResult> uploadDatasetRx(String fileName, Purpose purpose, DatasetProducer<T> producer) {
+		return uploadOnce(UploadBodies.of(producer), fileName, purpose);
+	}
+	
+	/**
+	 * @see #uploadDataset(String, Purpose, DatasetProducer)
+	 */
+	public <T extends DatasetRecord> CompletableFuture<FileResult> uploadDatasetAsync(String fileName, Purpose purpose, DatasetProducer<T> producer) {
+		return Futures.toFuture(uploadDatasetRx(fileName, purpose, producer));
 	}
 	
 	public FileResult uploadFile(String fileContent, String fileName, Purpose purpose) {
+		return uploadFileRx(fileContent, fileName, purpose).blockingGet();
+	}
+	
+	public Single<FileResult> uploadFileRx(String fileContent, String fileName, Purpose purpose) {
 		RequestBody body = RequestBody.create(
 				MediaType.parse("multipart/form-data"),
 				fileContent
 		);
 		
-		MultipartBody.Part fileBody = MultipartBody.Part.createFormData("file", fileName, body);
-		
-		RequestBody purposeBody = RequestBody.create(MultipartBody.FORM, purpose.name);
-		
-		return api.uploadFile(purposeBody, fileBody).blockingGet();
+		return upload(body, fileName, purpose);
+	}
+	
+	public CompletableFuture<FileResult> uploadFileAsync(String fileContent, String fileName, Purpose purpose) {
+		return Futures.toFuture(uploadFileRx(fileContent, fileName, purpose));
 	}
 	
 	public FileResult retrieveFile(String fileId) {
-		return api.getFile(fileId).blockingGet();
+		return retrieveFileRx(fileId).blockingGet();
+	}
+	
+	public Single<FileResult> retrieveFileRx(String fileId) {
+		return executor.execute(Endpoint.GET_FILE, api.getFile(fileId));
+	}
+	
+	public CompletableFuture<FileResult> retrieveFileAsync(String fileId) {
+		return Futures.toFuture(retrieveFileRx(fileId));
 	}
 	
 	public List<FileResult> listFiles() {
-		return api.listFiles().blockingGet().data;
+		return listFilesRx().blockingGet();
+	}
+	
+	public Single<List<FileResult>> listFilesRx() {
+		return executor.execute(Endpoint.LIST_FILES, api.listFiles()).map(response -> response.data);
+	}
+	
+	public CompletableFuture<List<FileResult>> listFilesAsync() {
+		return Futures.toFuture(listFilesRx());
 	}
 	
 	public DeleteResult deleteFile(String fileId) {
-		return api.deleteFile(fileId).blockingGet();
+		return deleteFileRx(fileId).blockingGet();
+	}
+	
+	public Single<DeleteResult> deleteFileRx(String fileId) {
+		return executor.execute(Endpoint.DELETE_FILE, api.deleteFile(fileId));
+	}
+	
+	public CompletableFuture<DeleteResult> deleteFileAsync(String fileId) {
+		return Futures.toFuture(deleteFileRx(fileId));
+	}
+	
+	/**
+	 * Uploads the files with at most {@code concurrency} uploads in flight, sharing the service's connection pool,
+	 * dispatcher and rate limiter. The dispatcher's {@code maxRequestsPerHost} also caps concurrency.
+	 * A failed upload doesn't stop the others.
+	 *
+	 * @param retryPolicy the retry policy for each upload, or null for the {@link Endpoint#UPLOAD_FILE} policy of the service.
+	 *                    Uploads aren't idempotent, so a retry after a lost response can create a duplicate file.
+	 * @return a result for each path, in the order of the paths
+	 */
+	public List<BulkResult<Path, FileResult>> uploadFiles(List<Path> paths, Purpose purpose, int concurrency, RetryPolicy retryPolicy) {
+		return sorted(uploadFilesRx(paths, purpose, concurrency, retryPolicy)).blockingGet();
+	}
+	
+	/**
+	 * Emits the result of each upload as soon as it has finished, so in completion order.
+	 *
+	 * @see #uploadFiles(List, Purpose, int, RetryPolicy)
+	 */
+	public Flowable<BulkResult<Path, FileResult>> uploadFilesRx(List<Path> paths, Purpose purpose, int concurrency, RetryPolicy retryPolicy) {
+		return bulk(paths, concurrency, path -> executor.execute(Endpoint.UPLOAD_FILE,
+				uploadCall(UploadBodies.of(path, null), path.getFileName().toString(), purpose), retryPolicy));
+	}
+	
+	/**
+	 * @see #uploadFiles(List, Purpose, int, RetryPolicy)
+	 */
+	public CompletableFuture<List<BulkResult<Path, FileResult>>> uploadFilesAsync(List<Path> paths, Purpose purpose, int concurrency, RetryPolicy retryPolicy) {
+		return Futures.toFuture(sorted(uploadFilesRx(paths, purpose, concurrency, retryPolicy)));
+	}
+	
+	/**
+	 * Retrieves the files with at most {@code concurrency} calls in flight. A failed call doesn't stop the others.
+	 *
+	 * @param retryPolicy the retry policy for each call, or null for the {@link Endpoint#GET_FILE} policy of the service
+	 * @return a result for each id, in the order of the ids
+	 */
+	public List<BulkResult<String, FileResult>> retrieveFiles(List<String> fileIds, int concurrency, RetryPolicy retryPolicy) {
+		return sorted(retrieveFilesRx(fileIds, concurrency, retryPolicy)).blockingGet();
+	}
+	
+	/**
+	 * Emits the result of each call as soon as it has finished, so in completion order.
+	 *
+	 * @see #retrieveFiles(List, int, RetryPolicy)
+	 */
+	public Flowable<BulkResult<String, FileResult>> retrieveFilesRx(List<String> fileIds, int concurrency, RetryPolicy retryPolicy) {
+		return bulk(fileIds, concurrency, fileId -> executor.execute(Endpoint.GET_FILE, api.getFile(fileId), retryPolicy));
+	}
+	
+	/**
+	 * @see #retrieveFiles(List, int, RetryPolicy)
+	 */
+	public CompletableFuture<List<BulkResult<String, FileResult>>> retrieveFilesAsync(List<String> fileIds, int concurrency, RetryPolicy retryPolicy) {
+		return Futures.toFuture(sorted(retrieveFilesRx(fileIds, concurrency, retryPolicy)));
+	}
+	
+	/**
+	 * Deletes the files with at most {@code concurrency} calls in flight. A failed call doesn't stop the others.
+	 *
+	 * @param retryPolicy the retry policy for each call, or null for the {@link Endpoint#DELETE_FILE} policy of the service.
+	 *                    A retry after a lost response fails with a 404 if the first attempt went through.
+	 * @return a result for each id, in the order of the ids
+	 */
+	public List<BulkResult<String, DeleteResult>> deleteFiles(List<String> fileIds, int concurrency, RetryPolicy retryPolicy) {
+		return sorted(deleteFilesRx(fileIds, concurrency, retryPolicy)).blockingGet();
+	}
+	
+	/**
+	 * Emits the result of each call as soon as it has finished, so in completion order.
+	 *
+	 * @see #deleteFiles(List, int, RetryPolicy)
+	 */
+	public Flowable<BulkResult<String, DeleteResult>> deleteFilesRx(List<String> fileIds, int concurrency, RetryPolicy retryPolicy) {
+		return bulk(fileIds, concurrency, fileId -> executor.execute(Endpoint.DELETE_FILE, api.deleteFile(fileId), retryPolicy));
+	}
+	
+	/**
+	 * @see #deleteFiles(List, int, RetryPolicy)
+	 */
+	public CompletableFuture<List<BulkResult<String, DeleteResult>>> deleteFilesAsync(List<String> fileIds, int concurrency, RetryPolicy retryPolicy) {
+		return Futures.toFuture(sorted(deleteFilesRx(fileIds, concurrency, retryPolicy)));
+	}
+	
+	/**
+	 * Runs the call for each input with at most {@code concurrency} in flight, turning failures into results.
+	 */
+	private static <I, R> Flowable<BulkResult<I, R>> bulk(List<I> inputs, int concurrency, Function<I, Single<R>> call) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+		}
+		return Flowable.range(0, inputs.size()).flatMapSingle(index -> {
+			I input = inputs.get(index);
+			return Single.defer(() -> call.apply(input))
+					.map(result -> BulkResult.success(index, input, result))
+					.onErrorReturn(error -> BulkResult.failure(index, input, error));
+		}, false, concurrency);
+	}
+	
+	private static <I, R> Single<List<BulkResult<I, R>>> sorted(Flowable<BulkResult<I, R>> results) {
+		return results.toSortedList(Comparator.comparingInt(BulkResult::getIndex));
+	}
+	
+	private Single<FileResult> upload(RequestBody body, String fileName, Purpose purpose) {
+		return executor.execute(Endpoint.UPLOAD_FILE, uploadCall(body, fileName, purpose));
+	}
+	
+	/**
+	 * Uploads a body that can't be written twice: it still waits for rate limit quota and is recorded in the metrics,
+	 * but is never retried. Uploads aren't idempotent, so it isn't hedged either.
+	 */
+	private Single<FileResult> uploadOnce(RequestBody body, String fileName, Purpose purpose) {
+		return executor.execute(Endpoint.UPLOAD_FILE, uploadCall(body, fileName, purpose), RetryPolicy.none());
+	}
+	
+	/**
+	 * The upload without the executor.
+	 */
+	private Single<FileResult> uploadCall(RequestBody body, String fileName, Purpose purpose) {
+		MultipartBody.Part fileBody = MultipartBody.Part.createFormData("file", fileName, body);
+		
+		RequestBody purposeBody = RequestBody.create(MultipartBody.FORM, purpose.name);
+		
+		return api.uploadFile(purposeBody, fileBody);
 	}
 	
 }
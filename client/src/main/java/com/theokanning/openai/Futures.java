@@ -0,0 +1,31 @@
+package com.theokanning.openai;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bridges RxJava {@link Single}s to {@link CompletableFuture}s without blocking a thread.
+ */
+final class Futures {
+	
+	private Futures() {
+	}
+	
+	/**
+	 * Subscribes to the given single and completes the returned future with its result.
+	 * Cancelling the future disposes the subscription, which cancels the underlying http call.
+	 */
+	static <T> CompletableFuture<T> toFuture(Single<T> single) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		Disposable disposable = single.subscribe(future::complete, future::completeExceptionally);
+		future.whenComplete((result, error) -> {
+			if (future.isCancelled()) {
+				disposable.dispose();
+			}
+		});
+		return future;
+	}
+	
+}
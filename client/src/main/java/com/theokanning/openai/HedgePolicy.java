@@ -0,0 +1,238 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.LatencyHistogram;
+import com.theokanning.openai.metrics.MetricsRecorder;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends a duplicate of a call that hasn't been answered within a delay, and uses whichever response succeeds first.
+ * The other call is cancelled, which closes its connection or stream. A call only fails if the original fails and the
+ * duplicate, if one was sent, fails as well, with the error of the original.
+ * <p>
+ * The delay is a high percentile of the latencies seen for the endpoint, so only the slowest calls are hedged.
+ * Once {@value #DELAY_UPDATE_INTERVAL} latencies have been seen, it is only recomputed every
+ * {@value #DELAY_UPDATE_INTERVAL} latencies rather than per call.
+ * Until enough latencies have been seen, {@link Builder#initialDelay} is used. Hedges are drawn from a {@link RetryBudget},
+ * which caps the extra load to a fraction of the calls made.
+ * <p>
+ * Only calls that can safely be sent twice are hedged: idempotent endpoints, and completions, searches, answers and
+ * classifications whose result is deterministic, like completions with a temperature of 0. Streams are never hedged.
+ * With HTTP/1.1 the duplicate goes out on another connection, since the first one is still busy.
+ *
+ * @see OpenAiServiceBuilder#hedgePolicy(HedgePolicy)
+ */
+public class HedgePolicy {
+	
+	/**
+	 * The number of latencies recorded between updates of an endpoint's delay, since computing a percentile reads every
+	 * bucket of the histogram. Before that many have been seen, the delay is updated with each one, so that it settles quickly.
+	 */
+	static final int DELAY_UPDATE_INTERVAL = 100;
+	
+	private final double percentile;
+	
+	private final long initialDelayNanos;
+	
+	private final long minDelayNanos;
+	
+	private final int minSamples;
+	
+	private final RetryBudget budget;
+	
+	private final Map<Endpoint, Delay> delays = new EnumMap<>(Endpoint.class);
+	
+	private final LongAdder hedges = new LongAdder();
+	
+	private final LongAdder hedgeWins = new LongAdder();
+	
+	private HedgePolicy(Builder builder) {
+		this.percentile = builder.percentile;
+		this.initialDelayNanos = builder.initialDelay.toNanos();
+		this.minDelayNanos = builder.minDelay.toNanos();
+		this.minSamples = Math.max(1, builder.minSamples);
+		this.budget = builder.budget != null ? builder.budget : new RetryBudget(0.05, 5);
+		for (Endpoint endpoint : Endpoint.values()) {
+			delays.put(endpoint, new Delay());
+		}
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	public RetryBudget getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * The number of duplicate calls sent.
+	 */
+	public long getHedges() {
+		return hedges.sum();
+	}
+	
+	/**
+	 * The number of duplicate calls that answered before the original.
+	 */
+	public long getHedgeWins() {
+		return hedgeWins.sum();
+	}
+	
+	/**
+	 * The delay after which a call to the endpoint is currently hedged.
+	 */
+	public Duration getDelay(Endpoint endpoint) {
+		return Duration.ofNanos(delays.get(endpoint).nanos);
+	}
+	
+	/**
+	 * Subscribes to the call a second time if it hasn't succeeded or failed after the delay, and budget allows.
+	 * The call must be cold, so that each subscription makes a new http request.
+	 * <p>
+	 * A copy that fails completes empty, so that the other can still win the merge. If neither succeeds, the error of the
+	 * original is passed on, the hedge's is dropped.
+	 */
+	<T> Single<T> apply(Endpoint endpoint, Single<T> call, MetricsRecorder metrics) {
+		Delay delay = delays.get(endpoint);
+		return Single.defer(() -> {
+			budget.deposit();
+			long start = System.nanoTime();
+			long delayNanos = delay.nanos;
+			AtomicBoolean done = new AtomicBoolean();
+			CompletableSubject primaryFailed = CompletableSubject.create();
+			AtomicReference<Throwable> primaryError = new AtomicReference<>();
+			Maybe<T> primary = call
+					.doOnSuccess(result -> delay.record(start, done))
+					.doOnDispose(() -> delay.record(start, done))
+					.toMaybe()
+					.onErrorResumeNext(error -> {
+						primaryError.set(error);
+						primaryFailed.onComplete();
+						return Maybe.empty();
+					});
+			Maybe<T> hedge = Maybe.timer(delayNanos, TimeUnit.NANOSECONDS)
+					.takeUntil(primaryFailed.toMaybe())
+					.flatMap(tick -> {
+						if (!budget.tryWithdraw()) {
+							return Maybe.empty();
+						}
+						hedges.increment();
+						metrics.hedged(endpoint);
+						return call
+								.doOnSuccess(result -> hedgeWins.increment())
+								.toMaybe()
+								.onErrorComplete();
+					});
+			return Maybe.merge(primary, hedge)
+					.firstElement()
+					.switchIfEmpty(Single.defer(() -> Single.error(primaryError.get())));
+		});
+	}
+	
+	/**
+	 * The latencies of one endpoint, and the delay computed from them.
+	 */
+	private final class Delay {
+		
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		
+		private final AtomicLong recorded = new AtomicLong();
+		
+		private volatile long nanos = initialDelayNanos;
+		
+		/**
+		 * Records the latency of the original call, or how long it had been running when a hedge beat it,
+		 * so that slow calls still count towards the percentile.
+		 */
+		void record(long start, AtomicBoolean done) {
+			if (!done.compareAndSet(false, true)) {
+				return;
+			}
+			histogram.record(System.nanoTime() - start);
+			long count = recorded.incrementAndGet();
+			if (count >= minSamples && (count <= DELAY_UPDATE_INTERVAL || count % DELAY_UPDATE_INTERVAL == 0)) {
+				nanos = Math.max(minDelayNanos, histogram.getPercentile(percentile).toNanos());
+			}
+		}
+		
+	}
+	
+	public static class Builder {
+		
+		private double percentile = 0.95;
+		
+		private Duration initialDelay = Duration.ofSeconds(1);
+		
+		private Duration minDelay = Duration.ofMillis(20);
+		
+		private int minSamples = 20;
+		
+		private RetryBudget budget;
+		
+		Builder() {
+		}
+		
+		/**
+		 * The latency percentile after which a call is hedged, between 0 and 1. Defaults to 0.95.
+		 */
+		public Builder percentile(double percentile) {
+			this.percentile = percentile;
+			return this;
+		}
+		
+		/**
+		 * The delay used until {@link #minSamples} latencies have been seen for the endpoint. Defaults to 1 second.
+		 */
+		public Builder initialDelay(Duration initialDelay) {
+			this.initialDelay = initialDelay;
+			return this;
+		}
+		
+		/**
+		 * The shortest delay before a hedge, however fast the endpoint has been. Defaults to 20 milliseconds.
+		 */
+		public Builder minDelay(Duration minDelay) {
+			this.minDelay = minDelay;
+			return this;
+		}
+		
+		/**
+		 * The number of latencies needed before the percentile is used. Defaults to 20.
+		 */
+		public Builder minSamples(int minSamples) {
+			this.minSamples = minSamples;
+			return this;
+		}
+		
+		/**
+		 * The budget hedges are drawn from. Defaults to a new budget per policy allowing 5% of calls to be hedged.
+		 */
+		public Builder budget(RetryBudget budget) {
+			this.budget = budget;
+			return this;
+		}
+		
+		public HedgePolicy build() {
+			if (percentile <= 0 || percentile >= 1) {
+				throw new IllegalArgumentException("Percentile must be between 0 and 1: " + percentile);
+			}
+			if (initialDelay.isNegative() || minDelay.isNegative()) {
+				throw new IllegalArgumentException("Delays must not be negative");
+			}
+			return new HedgePolicy(this);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,340 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.RateLimitHeaders;
+import okhttp3.Headers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several api keys, each with its own quota, used in turn by a single {@link OpenAiService} to get past the quota of one key.
+ * All keys share the service's connections.
+ * <p>
+ * Each call picks a key by the {@link Strategy}. The rate limit headers of every response update what is known about the
+ * remaining quota of its key. A key that gets a 429 is quarantined until its quota resets, as given by the
+ * {@code Retry-After} or {@code x-ratelimit-reset-*} headers, or for {@link Builder#rateLimitQuarantine} if there are none.
+ * A key that gets a 401 is quarantined for {@link Builder#unauthorizedQuarantine}. If every key is quarantined, the key
+ * released soonest is used.
+ *
+ * @see OpenAiService#builder(KeyPool)
+ */
+public class KeyPool {
+	
+	public enum Strategy {
+		/**
+		 * The key with the fewest calls in flight, which spreads load evenly across keys with the same quota.
+		 */
+		LEAST_OUTSTANDING,
+		/**
+		 * The key with the largest share of its request and token quota left, less its calls in flight.
+		 * Keys that haven't had a response yet count as having their whole quota left.
+		 */
+		REMAINING_QUOTA
+	}
+	
+	private final List<Key> keys;
+	
+	private final Strategy strategy;
+	
+	private final long rateLimitQuarantineNanos;
+	
+	private final long unauthorizedQuarantineNanos;
+	
+	private int next;
+	
+	private KeyPool(Builder builder) {
+		this.keys = Collections.unmodifiableList(new ArrayList<>(builder.keys));
+		this.strategy = builder.strategy;
+		this.rateLimitQuarantineNanos = builder.rateLimitQuarantine.toNanos();
+		this.unauthorizedQuarantineNanos = builder.unauthorizedQuarantine.toNanos();
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	public List<Key> getKeys() {
+		return keys;
+	}
+	
+	public Strategy getStrategy() {
+		return strategy;
+	}
+	
+	/**
+	 * Picks the key for a call and counts the call as in flight until {@link #release} is called.
+	 * Ties are broken round robin, so that keys with equal standing take turns.
+	 */
+	synchronized Key acquire() {
+		long now = System.nanoTime();
+		Key best = null;
+		double bestScore = 0;
+		Key soonest = null;
+		for (int i = 0; i < keys.size(); i++) {
+			Key key = keys.get((next + i) % keys.size());
+			if (key.quarantinedUntilNanos - now > 0) {
+				if (soonest == null || key.quarantinedUntilNanos - soonest.quarantinedUntilNanos < 0) {
+					soonest = key;
+				}
+				continue;
+			}
+			double score = score(key, now);
+			if (best == null || score > bestScore) {
+				best = key;
+				bestScore = score;
+			}
+		}
+		if (best == null) {
+			best = soonest;
+		}
+		next = (keys.indexOf(best) + 1) % keys.size();
+		best.outstanding++;
+		best.requests++;
+		return best;
+	}
+	
+	/**
+	 * Ends a call made with the key, updating its quota from the response headers, or quarantining it.
+	 *
+	 * @param statusCode the status of the response, or 0 if there was none
+	 * @param headers    the response headers, or null if there was no response
+	 */
+	synchronized void release(Key key, int statusCode, Headers headers) {
+		key.outstanding--;
+		long now = System.nanoTime();
+		if (headers != null) {
+			key.observe(headers, now);
+		}
+		if (statusCode == 429) {
+			key.rateLimited++;
+			long resetNanos = headers != null ? resetNanos(headers) : 0;
+			key.quarantine(now + (resetNanos > 0 ? resetNanos : rateLimitQuarantineNanos));
+		} else if (statusCode == 401) {
+			key.unauthorized++;
+			key.quarantine(now + unauthorizedQuarantineNanos);
+		}
+	}
+	
+	private double score(Key key, long now) {
+		if (strategy == Strategy.LEAST_OUTSTANDING) {
+			return -key.outstanding;
+		}
+		return Math.min(
+				share(key.remainingRequests, key.limitRequests, key.requestsResetNanos, now, key.outstanding),
+				share(key.remainingTokens, key.limitTokens, key.tokensResetNanos, now, 0)
+		) - key.outstanding * 1e-6;
+	}
+	
+	/**
+	 * The share of a quota left, taking calls in flight as already spent, or 1 if it isn't known or has reset since.
+	 */
+	private static double share(long remaining, long limit, long resetAtNanos, long now, int outstanding) {
+		if (limit <= 0 || remaining < 0 || (resetAtNanos != 0 && now - resetAtNanos >= 0)) {
+			return 1;
+		}
+		return Math.max(0, remaining - outstanding) / (double) limit;
+	}
+	
+	/**
+	 * The wait before the quota of a rate limited key resets: {@code Retry-After} if present, otherwise the later of the
+	 * request and token resets.
+	 */
+	static long resetNanos(Headers headers) {
+		String retryAfter = headers.get("Retry-After");
+		if (retryAfter != null) {
+			try {
+				return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+			} catch (NumberFormatException e) {
+				// an http date, fall back to the rate limit headers
+			}
+		}
+		RateLimitHeaders rateLimit = RateLimitHeaders.parse(headers);
+		return rateLimit != null ? Math.max(rateLimit.getResetRequestsNanos(), rateLimit.getResetTokensNanos()) : 0;
+	}
+	
+	/**
+	 * An api key and what is known about its quota. Updated by the pool under its lock, the getters return the latest values.
+	 */
+	public static final class Key {
+		
+		private final String token;
+		
+		private final String organization;
+		
+		private volatile int outstanding;
+		
+		private volatile long requests;
+		
+		private volatile long rateLimited;
+		
+		private volatile long unauthorized;
+		
+		private volatile long limitRequests = -1;
+		
+		private volatile long remainingRequests = -1;
+		
+		private volatile long requestsResetNanos;
+		
+		private volatile long limitTokens = -1;
+		
+		private volatile long remainingTokens = -1;
+		
+		private volatile long tokensResetNanos;
+		
+		private volatile long quarantinedUntilNanos = System.nanoTime();
+		
+		private Key(String token, String organization) {
+			this.token = token;
+			this.organization = organization;
+		}
+		
+		String token() {
+			return token;
+		}
+		
+		/**
+		 * @return the organization sent with the key, or null if there is none
+		 */
+		public String getOrganization() {
+			return organization;
+		}
+		
+		/**
+		 * The calls currently in flight with the key.
+		 */
+		public int getOutstanding() {
+			return outstanding;
+		}
+		
+		/**
+		 * The number of calls made with the key.
+		 */
+		public long getRequests() {
+			return requests;
+		}
+		
+		public long getRateLimited() {
+			return rateLimited;
+		}
+		
+		public long getUnauthorized() {
+			return unauthorized;
+		}
+		
+		/**
+		 * @return the requests left in the current window as of the last response, or -1 if not known
+		 */
+		public long getRemainingRequests() {
+			return remainingRequests;
+		}
+		
+		/**
+		 * @return the tokens left in the current window as of the last response, or -1 if not known
+		 */
+		public long getRemainingTokens() {
+			return remainingTokens;
+		}
+		
+		public boolean isQuarantined() {
+			return quarantinedUntilNanos - System.nanoTime() > 0;
+		}
+		
+		private void observe(Headers headers, long now) {
+			RateLimitHeaders rateLimit = RateLimitHeaders.parse(headers);
+			if (rateLimit == null) {
+				return;
+			}
+			if (rateLimit.getLimitRequests() > 0 && rateLimit.getRemainingRequests() >= 0) {
+				limitRequests = rateLimit.getLimitRequests();
+				remainingRequests = rateLimit.getRemainingRequests();
+				requestsResetNanos = rateLimit.getResetRequestsNanos() > 0 ? now + rateLimit.getResetRequestsNanos() : 0;
+			}
+			if (rateLimit.getLimitTokens() > 0 && rateLimit.getRemainingTokens() >= 0) {
+				limitTokens = rateLimit.getLimitTokens();
+				remainingTokens = rateLimit.getRemainingTokens();
+				tokensResetNanos = rateLimit.getResetTokensNanos() > 0 ? now + rateLimit.getResetTokensNanos() : 0;
+			}
+		}
+		
+		private void quarantine(long untilNanos) {
+			if (untilNanos - quarantinedUntilNanos > 0) {
+				quarantinedUntilNanos = untilNanos;
+			}
+		}
+		
+		/**
+		 * Shows only the last characters of the key.
+		 */
+		@Override
+		public String toString() {
+			String suffix = token.length() > 4 ? token.substring(token.length() - 4) : "";
+			return "Key(..." + suffix + ", outstanding=" + outstanding + ", requests=" + requests
+					+ ", remainingRequests=" + remainingRequests + ", remainingTokens=" + remainingTokens
+					+ ", quarantined=" + isQuarantined() + ")";
+		}
+		
+	}
+	
+	public static class Builder {
+		
+		private final List<Key> keys = new ArrayList<>();
+		
+		private Strategy strategy = Strategy.LEAST_OUTSTANDING;
+		
+		private Duration rateLimitQuarantine = Duration.ofSeconds(20);
+		
+		private Duration unauthorizedQuarantine = Duration.ofMinutes(10);
+		
+		Builder() {
+		}
+		
+		public Builder key(String token) {
+			return key(token, null);
+		}
+		
+		/**
+		 * @param organization the organization to bill calls made with this key to, or null for the key's default
+		 */
+		public Builder key(String token, String organization) {
+			keys.add(new Key(Objects.requireNonNull(token, "token"), organization));
+			return this;
+		}
+		
+		/**
+		 * How to pick the key for a call. Defaults to {@link Strategy#LEAST_OUTSTANDING}.
+		 */
+		public Builder strategy(Strategy strategy) {
+			this.strategy = strategy;
+			return this;
+		}
+		
+		/**
+		 * How long a key that got a 429 is left out if the response doesn't say when its quota resets. Defaults to 20 seconds.
+		 */
+		public Builder rateLimitQuarantine(Duration rateLimitQuarantine) {
+			this.rateLimitQuarantine = rateLimitQuarantine;
+			return this;
+		}
+		
+		/**
+		 * How long a key that got a 401 is left out. Defaults to 10 minutes.
+		 */
+		public Builder unauthorizedQuarantine(Duration unauthorizedQuarantine) {
+			this.unauthorizedQuarantine = unauthorizedQuarantine;
+			return this;
+		}
+		
+		public KeyPool build() {
+			if (keys.isEmpty()) {
+				throw new IllegalArgumentException("A key pool needs at least one key");
+			}
+			return new KeyPool(this);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,66 @@
+package com.theokanning.openai;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OkHttp Interceptor that authenticates each request with a key from a {@link KeyPool}, in place of
+ * {@link AuthenticationInterceptor}.
+ * <p>
+ * A call counts as in flight with its key until its response body is closed, so that streams hold on to their key.
+ */
+public class KeyPoolInterceptor implements Interceptor {
+	
+	private final KeyPool keyPool;
+	
+	public KeyPoolInterceptor(KeyPool keyPool) {
+		this.keyPool = keyPool;
+	}
+	
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		KeyPool.Key key = keyPool.acquire();
+		Request.Builder requestBuilder = chain.request()
+				.newBuilder()
+				.header("Authorization", "Bearer " + key.token());
+		if (key.getOrganization() != null) {
+			requestBuilder.header("OpenAI-Organization", key.getOrganization());
+		}
+		Response response;
+		try {
+			response = chain.proceed(requestBuilder.build());
+		} catch (IOException | RuntimeException e) {
+			keyPool.release(key, 0, null);
+			throw e;
+		}
+		ResponseBody body = response.body();
+		if (body == null) {
+			keyPool.release(key, response.code(), response.headers());
+			return response;
+		}
+		AtomicBoolean released = new AtomicBoolean();
+		ForwardingSource source = new ForwardingSource(body.source()) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if (released.compareAndSet(false, true)) {
+						keyPool.release(key, response.code(), response.headers());
+					}
+				}
+			}
+		};
+		return response.newBuilder()
+				.body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+				.build();
+	}
+	
+}
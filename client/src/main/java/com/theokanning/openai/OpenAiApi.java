@@ -17,6 +17,8 @@ import com.theokanning.openai.search.SearchResult;
 import io.reactivex.Single;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
 import retrofit2.http.*;
 
 public interface OpenAiApi {
@@ -30,12 +32,25 @@ public interface OpenAiApi {
 	@POST("/v1/engines/{engine_id}/completions")
 	Single<CompletionResult> createCompletion(@Path("engine_id") String engineId, @Body CompletionRequest request);
 	
+	@Streaming
+	@POST("/v1/engines/{engine_id}/completions")
+	Call<ResponseBody> createCompletionStream(@Path("engine_id") String engineId, @Body CompletionRequest request);
+	
+	@POST("/v1/engines/{engine_id}/completions")
+	Single<CompletionResult> createCompletion(@Path("engine_id") String engineId, @Body RequestBody request);
+	
 	@POST("/v1/engines/{engine_id}/search")
 	Single<OpenAiResponse<SearchResult>> search(@Path("engine_id") String engineId, @Body SearchRequest request);
 	
+	@POST("/v1/engines/{engine_id}/search")
+	Single<OpenAiResponse<SearchResult>> search(@Path("engine_id") String engineId, @Body RequestBody request);
+	
 	@POST("/v1/answers")
 	Single<AnswerResult> answer(@Body AnswerRequest request);
 	
+	@POST("/v1/answers")
+	Single<AnswerResult> answer(@Body RequestBody request);
+	
 	@Multipart
 	@POST("/v1/files")
 	Single<FileResult> uploadFile(
@@ -55,6 +70,9 @@ public interface OpenAiApi {
 	@POST("/v1/classifications")
 	Single<ClassificationResult> classification(@Body ClassificationRequest request);
 	
+	@POST("/v1/classifications")
+	Single<ClassificationResult> classification(@Body RequestBody request);
+	
 	@POST("/v1/fine-tunes")
 	Single<FineTuneResult> fineTune(@Body FineTuneRequest request);
 	
@@ -67,7 +85,11 @@ public interface OpenAiApi {
 	@POST("/v1/fine-tunes/{fine_tune_id}/cancel")
 	Single<FineTuneResult> cancelFineTune(@Path("fine_tune_id") String fineTuneId);
 	
-	@POST("/v1/fine-tunes/{fine_tune_id}/events")
+	@GET("/v1/fine-tunes/{fine_tune_id}/events")
 	Single<OpenAiResponse<FineTuneEvent>> listFineTuneEvents(@Path("fine_tune_id") String fineTuneId);
 	
+	@Streaming
+	@GET("/v1/fine-tunes/{fine_tune_id}/events")
+	Call<ResponseBody> streamFineTuneEvents(@Path("fine_tune_id") String fineTuneId, @Query("stream") boolean stream);
+	
 }
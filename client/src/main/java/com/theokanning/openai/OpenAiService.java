@@ -2,13 +2,17 @@ package com.theokanning.openai;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.theokanning.openai.answer.AnswerRequest;
 import com.theokanning.openai.answer.AnswerResult;
+import com.theokanning.openai.cache.CacheStats;
 import com.theokanning.openai.classification.ClassificationRequest;
 import com.theokanning.openai.classification.ClassificationResult;
+import com.theokanning.openai.completion.CompactLogProbDeserializer;
+import com.theokanning.openai.completion.CompletionChoice;
 import com.theokanning.openai.completion.CompletionRequest;
 import com.theokanning.openai.completion.CompletionResult;
 import com.theokanning.openai.engine.Engine;
@@ -17,21 +21,64 @@ import com.theokanning.openai.finetunes.FineTuneRequest;
 import com.theokanning.openai.finetunes.FineTuneResult;
 import com.theokanning.openai.search.SearchRequest;
 import com.theokanning.openai.search.SearchResult;
-import okhttp3.ConnectionPool;
+import com.theokanning.openai.tokenizer.TokenLimits;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Client for the OpenAI GPT-3 api.
+ * <p>
+ * Every endpoint is available in three flavours:
+ * <ul>
+ *     <li>a blocking method, e.g. {@link #createCompletion}, which waits for the result on the calling thread</li>
+ *     <li>an {@code Rx} method, e.g. {@link #createCompletionRx}, returning a cold {@link Single} that performs the call when subscribed to</li>
+ *     <li>an {@code Async} method, e.g. {@link #createCompletionAsync}, returning a {@link CompletableFuture} that is already in flight</li>
+ * </ul>
+ * The non-blocking flavours are dispatched on OkHttp's own thread pool, so no caller thread is held while waiting for a response.
+ * Blocking methods park the calling thread on a latch rather than a monitor, so a calling virtual thread isn't pinned while it waits.
+ * The calls themselves still run on OkHttp's dispatcher threads, see {@link OpenAiServiceBuilder#virtualThreads(boolean)}.
+ */
 public class OpenAiService {
 	
 	OpenAiApi api;
 	
+	final ObjectMapper mapper;
+	
+	final CallExecutor executor;
+	
+	final ResponseCaching caching;
+	
+	final SingleFlight singleFlight;
+	
+	final boolean checkTokenLimits;
+	
+	private final Map<String, Integer> contextLengths;
+	
 	public final FileService fileService;
 	
+	/**
+	 * The engine list, loaded once and kept in memory for lookups without a round trip.
+	 */
+	public final EngineRegistry engineRegistry;
+	
+	final boolean validateEngineIds;
+	
+	final Map<String, Bulkhead> bulkheads;
+	
 	/**
 	 * You can find your api keys at <a href="https://beta.openai.com/account/api-keys">openai.com</a>
 	 *
@@ -48,42 +95,164 @@ public class OpenAiService {
 	 * @param organization Optional organization ID if you are part of multiple organizations.
 	 */
 	public OpenAiService(String token, String organization) {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-		mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-		mapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
-		mapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+		this(builder(token).organization(organization));
+	}
+	
+	OpenAiService(OpenAiServiceBuilder builder) {
+		mapper = defaultObjectMapper();
+		if (builder.compactLogprobs) {
+			mapper.registerModule(CompactLogProbDeserializer.module());
+		}
 		
-		OkHttpClient client = new OkHttpClient.Builder()
-				.addInterceptor(new AuthenticationInterceptor(token, organization))
-				.connectionPool(new ConnectionPool(5, 1, TimeUnit.SECONDS))
-				.build();
+		OkHttpClient client = builder.buildClient();
+		
+		Map<String, Set<Endpoint>> groups = new LinkedHashMap<>(builder.bulkheads);
+		Map<String, Integer> limits = new HashMap<>(builder.bulkheadLimits);
+		if (builder.adaptiveLimiter != null) {
+			// every endpoint needs a dispatcher of its own for the limiter to adjust
+			EnumSet<Endpoint> grouped = EnumSet.noneOf(Endpoint.class);
+			groups.values().forEach(grouped::addAll);
+			for (Endpoint endpoint : EnumSet.complementOf(grouped)) {
+				groups.put(endpoint.name(), EnumSet.of(endpoint));
+				limits.put(endpoint.name(), builder.adaptiveLimiter.getInitialLimit());
+			}
+		}
+		Bulkheads bulkheads = new Bulkheads(client, groups, limits);
+		this.bulkheads = bulkheads.bulkheads();
+		if (builder.adaptiveLimiter != null) {
+			builder.adaptiveLimiter.bind(this.bulkheads, builder.metrics);
+		}
 		
 		Retrofit retrofit = new Retrofit.Builder()
-				.baseUrl("https://api.openai.com/")
-				.client(client)
+				.baseUrl(builder.baseUrl)
+				.callFactory(groups.isEmpty() ? client : bulkheads)
 				.addConverterFactory(JacksonConverterFactory.create(mapper))
-				.addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+				.addCallAdapterFactory(RxJava2CallAdapterFactory.createAsync())
 				.build();
 		
 		api = retrofit.create(OpenAiApi.class);
 		
-		fileService = new FileService(api);
+		executor = new CallExecutor(builder.retryPolicy, builder.retryPolicies, builder.metrics, builder.hedgePolicy, builder.rateLimiter);
+		
+		checkTokenLimits = builder.checkTokenLimits;
+		contextLengths = new HashMap<>(builder.contextLengths);
+		
+		RequestKeys keys = new RequestKeys(mapper);
+		
+		caching = builder.responseCache != null ? new ResponseCaching(builder.responseCache, mapper, keys) : null;
+		
+		singleFlight = builder.singleFlight ? new SingleFlight(keys) : null;
+		
+		fileService = new FileService(api, executor);
+		
+		engineRegistry = new EngineRegistry(Single.defer(this::getEnginesRx), builder.engineTtl);
+		
+		validateEngineIds = builder.validateEngineIds;
 		
 	}
 	
+	/**
+	 * Creates a builder for configuring the http transport, e.g. connection pool size, keep-alive,
+	 * dispatcher limits, protocols and timeouts.
+	 *
+	 * @param token Your OpenAi token.
+	 */
+	public static OpenAiServiceBuilder builder(String token) {
+		return new OpenAiServiceBuilder(token);
+	}
+	
+	/**
+	 * Creates a builder for a service that spreads its calls over several api keys, see {@link KeyPool}.
+	 * The organization of each key is set in the pool.
+	 */
+	public static OpenAiServiceBuilder builder(KeyPool keyPool) {
+		return new OpenAiServiceBuilder(keyPool);
+	}
+	
+	/**
+	 * Creates the object mapper used for requests and responses: snake case, only non-null fields, and unknown properties ignored.
+	 * Use it with {@link OpenAiApi} in your own Retrofit client.
+	 */
+	public static ObjectMapper defaultObjectMapper() {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+		mapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+		mapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
+		return mapper;
+	}
+	
+	/**
+	 * @return the hit and miss counts of the response cache so far, or null if no cache is configured
+	 * @see OpenAiServiceBuilder#responseCache
+	 */
+	public CacheStats getCacheStats() {
+		return caching != null ? caching.stats() : null;
+	}
+	
+	/**
+	 * @return the number of calls sent and collapsed into identical calls in flight, or null if single flight isn't enabled
+	 * @see OpenAiServiceBuilder#singleFlight(boolean)
+	 */
+	public SingleFlightStats getSingleFlightStats() {
+		return singleFlight != null ? singleFlight.stats() : null;
+	}
+	
+	/**
+	 * @return the bulkhead with the given name, or null if there is none
+	 * @see OpenAiServiceBuilder#bulkhead(String, int, Endpoint...)
+	 */
+	public Bulkhead getBulkhead(String name) {
+		return bulkheads.get(name);
+	}
+	
+	/**
+	 * @return the bulkheads by name, in the order they were configured
+	 */
+	public Map<String, Bulkhead> getBulkheads() {
+		return bulkheads;
+	}
+	
 	/**
 	 * @see Engine
 	 */
 	public List<Engine> getEngines() {
-		return api.getEngines().blockingGet().data;
+		return getEnginesRx().blockingGet();
+	}
+	
+	/**
+	 * @see #getEngines()
+	 */
+	public Single<List<Engine>> getEnginesRx() {
+		return executor.execute(Endpoint.GET_ENGINES, api.getEngines()).map(response -> response.data);
+	}
+	
+	/**
+	 * @see #getEngines()
+	 */
+	public CompletableFuture<List<Engine>> getEnginesAsync() {
+		return Futures.toFuture(getEnginesRx());
 	}
 	
 	/**
 	 * @see Engine
 	 */
 	public Engine getEngine(String engineId) {
-		return api.getEngine(engineId).blockingGet();
+		return getEngineRx(engineId).blockingGet();
+	}
+	
+	/**
+	 * @see #getEngine(String)
+	 */
+	public Single<Engine> getEngineRx(String engineId) {
+		return executor.execute(Endpoint.GET_ENGINE, api.getEngine(engineId));
+	}
+	
+	/**
+	 * @see #getEngine(String)
+	 */
+	public CompletableFuture<Engine> getEngineAsync(String engineId) {
+		return Futures.toFuture(getEngineRx(engineId));
 	}
 	
 	/**
@@ -91,7 +260,108 @@ public class OpenAiService {
 	 * @see CompletionResult
 	 */
 	public CompletionResult createCompletion(String engineId, CompletionRequest request) {
-		return api.createCompletion(engineId, request).blockingGet();
+		return createCompletionRx(engineId, request).blockingGet();
+	}
+	
+	/**
+	 * @see #createCompletion(String, CompletionRequest)
+	 */
+	public Single<CompletionResult> createCompletionRx(String engineId, CompletionRequest request) {
+		return validated(engineId, checked(() -> TokenLimits.checkCompletion(request, contextLength(engineId)), cached(Endpoint.CREATE_COMPLETION, engineId, request, CompletionResult.class,
+				executor.execute(Endpoint.CREATE_COMPLETION, api.createCompletion(engineId, request), ResponseCaching.isDeterministic(request), RateLimiter.estimateTokens(request)))));
+	}
+	
+	/**
+	 * @see #createCompletion(String, CompletionRequest)
+	 */
+	public CompletableFuture<CompletionResult> createCompletionAsync(String engineId, CompletionRequest request) {
+		return Futures.toFuture(createCompletionRx(engineId, request));
+	}
+	
+	/**
+	 * Serializes the request once with its prompt left open, for calls that only differ in a single prompt.
+	 *
+	 * @throws IllegalArgumentException if streaming is enabled
+	 * @see RequestTemplate
+	 */
+	public RequestTemplate<CompletionRequest> completionTemplate(CompletionRequest request) {
+		if (Boolean.TRUE.equals(request.getStream())) {
+			throw new IllegalArgumentException("Streamed completions can't be sent from a template");
+		}
+		return new RequestTemplate<>(mapper, request, "prompt");
+	}
+	
+	/**
+	 * Sends the template with the prompt filled in, encoding only the prompt.
+	 *
+	 * @see #completionTemplate(CompletionRequest)
+	 */
+	public CompletionResult createCompletion(String engineId, RequestTemplate<CompletionRequest> template, String prompt) {
+		return createCompletionRx(engineId, template, prompt).blockingGet();
+	}
+	
+	/**
+	 * @see #createCompletion(String, RequestTemplate, String)
+	 */
+	public Single<CompletionResult> createCompletionRx(String engineId, RequestTemplate<CompletionRequest> template, String prompt) {
+		return validated(engineId, cached(Endpoint.CREATE_COMPLETION, engineId, new RequestTemplate.Filled(template, prompt), CompletionResult.class,
+				executor.execute(Endpoint.CREATE_COMPLETION, api.createCompletion(engineId, template.toRequestBody(prompt)), template.isDeterministic(), template.estimateTokens(prompt))));
+	}
+	
+	/**
+	 * @see #createCompletion(String, RequestTemplate, String)
+	 */
+	public CompletableFuture<CompletionResult> createCompletionAsync(String engineId, RequestTemplate<CompletionRequest> template, String prompt) {
+		return Futures.toFuture(createCompletionRx(engineId, template, prompt));
+	}
+	
+	/**
+	 * Creates a completion for each request, with at most {@code concurrency} calls in flight at once.
+	 * The results are in the same order as the requests. If any call fails the others are cancelled and the error is thrown.
+	 * <p>
+	 * With {@link OpenAiServiceBuilder#virtualThreads(boolean)} each call runs on its own virtual thread.
+	 * The dispatcher limits apply on top of {@code concurrency}.
+	 */
+	public List<CompletionResult> completeAll(String engineId, List<CompletionRequest> requests, int concurrency) {
+		return completeAllRx(engineId, requests, concurrency).blockingGet();
+	}
+	
+	/**
+	 * @see #completeAll(String, List, int)
+	 */
+	public Single<List<CompletionResult>> completeAllRx(String engineId, List<CompletionRequest> requests, int concurrency) {
+		return all(requests, concurrency, request -> createCompletionRx(engineId, request));
+	}
+	
+	/**
+	 * @see #completeAll(String, List, int)
+	 */
+	public CompletableFuture<List<CompletionResult>> completeAllAsync(String engineId, List<CompletionRequest> requests, int concurrency) {
+		return Futures.toFuture(completeAllRx(engineId, requests, concurrency));
+	}
+	
+	/**
+	 * Streams the completion as it is generated, emitting each partial choice as soon as its server-sent event arrives.
+	 * The request is copied with {@link CompletionRequest#stream} enabled, the original is not modified.
+	 * <p>
+	 * The http call is made when the flowable is subscribed to, and cancelling the subscription closes the connection.
+	 *
+	 * @see CompletionStreamListener
+	 */
+	public Flowable<CompletionChoice> streamCompletion(String engineId, CompletionRequest request) {
+		CompletionRequest streamRequest = request.toBuilder().stream(true).build();
+		return validated(engineId, checked(() -> TokenLimits.checkCompletion(request, contextLength(engineId)),
+				executor.limited(ServerSentEvents.stream(api.createCompletionStream(engineId, streamRequest)), RateLimiter.estimateTokens(streamRequest))))
+				.concatMapIterable(data -> mapper.readValue(data, CompletionResult.class).getChoices());
+	}
+	
+	/**
+	 * Callback flavour of {@link #streamCompletion(String, CompletionRequest)}.
+	 *
+	 * @return a handle that closes the stream when disposed
+	 */
+	public Disposable streamCompletion(String engineId, CompletionRequest request, CompletionStreamListener listener) {
+		return streamCompletion(engineId, request).subscribe(listener::onChoice, listener::onError, listener::onComplete);
 	}
 	
 	/**
@@ -99,7 +369,57 @@ public class OpenAiService {
 	 * @see SearchResult
 	 */
 	public List<SearchResult> search(String engineId, SearchRequest request) {
-		return api.search(engineId, request).blockingGet().data;
+		return searchRx(engineId, request).blockingGet();
+	}
+	
+	/**
+	 * @see #search(String, SearchRequest)
+	 */
+	public Single<List<SearchResult>> searchRx(String engineId, SearchRequest request) {
+		return validated(engineId, checked(() -> TokenLimits.checkSearch(request), cached(Endpoint.SEARCH, engineId, request,
+				mapper.getTypeFactory().constructCollectionType(List.class, SearchResult.class),
+				executor.execute(Endpoint.SEARCH, api.search(engineId, request), ResponseCaching.isDeterministic(request), RateLimiter.estimateTokens(request)).map(response -> response.data))));
+	}
+	
+	/**
+	 * @see #search(String, SearchRequest)
+	 */
+	public CompletableFuture<List<SearchResult>> searchAsync(String engineId, SearchRequest request) {
+		return Futures.toFuture(searchRx(engineId, request));
+	}
+	
+	/**
+	 * Serializes the request once with its query left open, for searches of the same documents with different queries.
+	 *
+	 * @see RequestTemplate
+	 */
+	public RequestTemplate<SearchRequest> searchTemplate(SearchRequest request) {
+		return new RequestTemplate<>(mapper, request, "query");
+	}
+	
+	/**
+	 * Sends the template with the query filled in, encoding only the query.
+	 *
+	 * @see #searchTemplate(SearchRequest)
+	 */
+	public List<SearchResult> search(String engineId, RequestTemplate<SearchRequest> template, String query) {
+		return searchRx(engineId, template, query).blockingGet();
+	}
+	
+	/**
+	 * @see #search(String, RequestTemplate, String)
+	 */
+	public Single<List<SearchResult>> searchRx(String engineId, RequestTemplate<SearchRequest> template, String query) {
+		return validated(engineId, cached(Endpoint.SEARCH, engineId, new RequestTemplate.Filled(template, query),
+				mapper.getTypeFactory().constructCollectionType(List.class, SearchResult.class),
+				executor.execute(Endpoint.SEARCH, api.search(engineId, template.toRequestBody(query)), template.isDeterministic(), template.estimateTokens(query)).map(response -> response.data)));
+	}
+	
+	/**
+	 * @see #search(String, RequestTemplate, String)
+	 */
+	public CompletableFuture<List<SearchResult>> searchAsync(String engineId, RequestTemplate<SearchRequest> template, String query) {
+		return Futures.toFuture(searchRx(engineId, template, query));
 	}
 	
 	/**
@@ -107,7 +427,54 @@ public class OpenAiService {
 	 * @see AnswerResult
 	 */
 	public AnswerResult answer(AnswerRequest request) {
-		return api.answer(request).blockingGet();
+		return answerRx(request).blockingGet();
+	}
+	
+	/**
+	 * @see #answer(AnswerRequest)
+	 */
+	public Single<AnswerResult> answerRx(AnswerRequest request) {
+		return cached(Endpoint.ANSWER, null, request, AnswerResult.class, executor.execute(Endpoint.ANSWER, api.answer(request), ResponseCaching.isDeterministic(request), RateLimiter.estimateTokens(request)));
+	}
+	
+	/**
+	 * @see #answer(AnswerRequest)
+	 */
+	public CompletableFuture<AnswerResult> answerAsync(AnswerRequest request) {
+		return Futures.toFuture(answerRx(request));
+	}
+	
+	/**
+	 * Serializes the request once with its question left open, for questions about the same documents and examples.
+	 *
+	 * @see RequestTemplate
+	 */
+	public RequestTemplate<AnswerRequest> answerTemplate(AnswerRequest request) {
+		return new RequestTemplate<>(mapper, request, "question");
+	}
+	
+	/**
+	 * Sends the template with the question filled in, encoding only the question.
+	 *
+	 * @see #answerTemplate(AnswerRequest)
+	 */
+	public AnswerResult answer(RequestTemplate<AnswerRequest> template, String question) {
+		return answerRx(template, question).blockingGet();
+	}
+	
+	/**
+	 * @see #answer(RequestTemplate, String)
+	 */
+	public Single<AnswerResult> answerRx(RequestTemplate<AnswerRequest> template, String question) {
+		return cached(Endpoint.ANSWER, null, new RequestTemplate.Filled(template, question), AnswerResult.class,
+				executor.execute(Endpoint.ANSWER, api.answer(template.toRequestBody(question)), template.isDeterministic(), template.estimateTokens(question)));
+	}
+	
+	/**
+	 * @see #answer(RequestTemplate, String)
+	 */
+	public CompletableFuture<AnswerResult> answerAsync(RequestTemplate<AnswerRequest> template, String question) {
+		return Futures.toFuture(answerRx(template, question));
 	}
 	
 	/**
@@ -115,7 +482,79 @@ public class OpenAiService {
 	 * @see ClassificationResult
 	 */
 	public ClassificationResult classification(ClassificationRequest request) {
-		return api.classification(request).blockingGet();
+		return classificationRx(request).blockingGet();
+	}
+	
+	/**
+	 * @see #classification(ClassificationRequest)
+	 */
+	public Single<ClassificationResult> classificationRx(ClassificationRequest request) {
+		return cached(Endpoint.CLASSIFICATION, null, request, ClassificationResult.class,
+				executor.execute(Endpoint.CLASSIFICATION, api.classification(request), ResponseCaching.isDeterministic(request), RateLimiter.estimateTokens(request)));
+	}
+	
+	/**
+	 * @see #classification(ClassificationRequest)
+	 */
+	public CompletableFuture<ClassificationResult> classificationAsync(ClassificationRequest request) {
+		return Futures.toFuture(classificationRx(request));
+	}
+	
+	/**
+	 * Serializes the request once with its query left open, for classifications against the same examples and labels.
+	 *
+	 * @see RequestTemplate
+	 */
+	public RequestTemplate<ClassificationRequest> classificationTemplate(ClassificationRequest request) {
+		return new RequestTemplate<>(mapper, request, "query");
+	}
+	
+	/**
+	 * Sends the template with the query filled in, encoding only the query.
+	 *
+	 * @see #classificationTemplate(ClassificationRequest)
+	 */
+	public ClassificationResult classification(RequestTemplate<ClassificationRequest> template, String query) {
+		return classificationRx(template, query).blockingGet();
+	}
+	
+	/**
+	 * @see #classification(RequestTemplate, String)
+	 */
+	public Single<ClassificationResult> classificationRx(RequestTemplate<ClassificationRequest> template, String query) {
+		return cached(Endpoint.CLASSIFICATION, null, new RequestTemplate.Filled(template, query), ClassificationResult.class,
+				executor.execute(Endpoint.CLASSIFICATION, api.classification(template.toRequestBody(query)), template.isDeterministic(), template.estimateTokens(query)));
+	}
+	
+	/**
+	 * @see #classification(RequestTemplate, String)
+	 */
+	public CompletableFuture<ClassificationResult> classificationAsync(RequestTemplate<ClassificationRequest> template, String query) {
+		return Futures.toFuture(classificationRx(template, query));
+	}
+	
+	/**
+	 * Classifies each request, with at most {@code concurrency} calls in flight at once.
+	 * The results are in the same order as the requests. If any call fails the others are cancelled and the error is thrown.
+	 *
+	 * @see #completeAll(String, List, int)
+	 */
+	public List<ClassificationResult> classifyAll(List<ClassificationRequest> requests, int concurrency) {
+		return classifyAllRx(requests, concurrency).blockingGet();
+	}
+	
+	/**
+	 * @see #classifyAll(List, int)
+	 */
+	public Single<List<ClassificationResult>> classifyAllRx(List<ClassificationRequest> requests, int concurrency) {
+		return all(requests, concurrency, this::classificationRx);
+	}
+	
+	/**
+	 * @see #classifyAll(List, int)
+	 */
+	public CompletableFuture<List<ClassificationResult>> classifyAllAsync(List<ClassificationRequest> requests, int concurrency) {
+		return Futures.toFuture(classifyAllRx(requests, concurrency));
 	}
 	
 	/**
@@ -123,35 +562,186 @@ public class OpenAiService {
 	 * @see FineTuneResult
 	 */
 	public FineTuneResult createFineTune(FineTuneRequest request) {
-		return api.fineTune(request).blockingGet();
+		return createFineTuneRx(request).blockingGet();
+	}
+	
+	/**
+	 * @see #createFineTune(FineTuneRequest)
+	 */
+	public Single<FineTuneResult> createFineTuneRx(FineTuneRequest request) {
+		return executor.execute(Endpoint.CREATE_FINE_TUNE, api.fineTune(request));
+	}
+	
+	/**
+	 * @see #createFineTune(FineTuneRequest)
+	 */
+	public CompletableFuture<FineTuneResult> createFineTuneAsync(FineTuneRequest request) {
+		return Futures.toFuture(createFineTuneRx(request));
 	}
 	
 	/**
 	 * @see FineTuneRequest
 	 */
 	public List<FineTuneResult> listFineTunes() {
-		return api.listFineTunes().blockingGet().data;
+		return listFineTunesRx().blockingGet();
+	}
+	
+	/**
+	 * @see #listFineTunes()
+	 */
+	public Single<List<FineTuneResult>> listFineTunesRx() {
+		return executor.execute(Endpoint.LIST_FINE_TUNES, api.listFineTunes()).map(response -> response.data);
+	}
+	
+	/**
+	 * @see #listFineTunes()
+	 */
+	public CompletableFuture<List<FineTuneResult>> listFineTunesAsync() {
+		return Futures.toFuture(listFineTunesRx());
 	}
 	
 	/**
 	 * @see FineTuneResult
 	 */
 	public FineTuneResult getFineTune(String fineTuneId) {
-		return api.getFineTune(fineTuneId).blockingGet();
+		return getFineTuneRx(fineTuneId).blockingGet();
+	}
+	
+	/**
+	 * @see #getFineTune(String)
+	 */
+	public Single<FineTuneResult> getFineTuneRx(String fineTuneId) {
+		return executor.execute(Endpoint.GET_FINE_TUNE, api.getFineTune(fineTuneId));
+	}
+	
+	/**
+	 * @see #getFineTune(String)
+	 */
+	public CompletableFuture<FineTuneResult> getFineTuneAsync(String fineTuneId) {
+		return Futures.toFuture(getFineTuneRx(fineTuneId));
 	}
 	
 	/**
 	 * @see FineTuneResult
 	 */
 	public FineTuneResult cancelFineTune(String fineTuneId) {
-		return api.cancelFineTune(fineTuneId).blockingGet();
+		return cancelFineTuneRx(fineTuneId).blockingGet();
+	}
+	
+	/**
+	 * @see #cancelFineTune(String)
+	 */
+	public Single<FineTuneResult> cancelFineTuneRx(String fineTuneId) {
+		return executor.execute(Endpoint.CANCEL_FINE_TUNE, api.cancelFineTune(fineTuneId));
+	}
+	
+	/**
+	 * @see #cancelFineTune(String)
+	 */
+	public CompletableFuture<FineTuneResult> cancelFineTuneAsync(String fineTuneId) {
+		return Futures.toFuture(cancelFineTuneRx(fineTuneId));
 	}
 	
 	/**
 	 * @see FineTuneEvent
 	 */
 	public List<FineTuneEvent> listFineTuneEvents(String fineTuneId) {
-		return api.listFineTuneEvents(fineTuneId).blockingGet().data;
+		return listFineTuneEventsRx(fineTuneId).blockingGet();
+	}
+	
+	/**
+	 * @see #listFineTuneEvents(String)
+	 */
+	public Single<List<FineTuneEvent>> listFineTuneEventsRx(String fineTuneId) {
+		return executor.execute(Endpoint.LIST_FINE_TUNE_EVENTS, api.listFineTuneEvents(fineTuneId)).map(response -> response.data);
+	}
+	
+	/**
+	 * @see #listFineTuneEvents(String)
+	 */
+	public CompletableFuture<List<FineTuneEvent>> listFineTuneEventsAsync(String fineTuneId) {
+		return Futures.toFuture(listFineTuneEventsRx(fineTuneId));
+	}
+	
+	/**
+	 * Streams the events of a fine-tune job. The events so far are sent first, then each new event as soon as it is logged,
+	 * and the stream completes once the job has finished.
+	 * <p>
+	 * The http call is made when the flowable is subscribed to, and cancelling the subscription closes the connection.
+	 *
+	 * @see com.theokanning.openai.finetunes.FineTuneWatcher
+	 */
+	public Flowable<FineTuneEvent> streamFineTuneEvents(String fineTuneId) {
+		return ServerSentEvents.stream(api.streamFineTuneEvents(fineTuneId, true))
+				.map(data -> mapper.readValue(data, FineTuneEvent.class));
+	}
+	
+	/**
+	 * Subscribes to up to {@code concurrency} calls at a time and collects their results in request order.
+	 */
+	private static <T, R> Single<List<R>> all(List<T> requests, int concurrency, Function<T, Single<R>> call) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+		}
+		return Flowable.fromIterable(requests)
+				.concatMapEager(request -> call.apply(request).toFlowable(), concurrency, 1)
+				.toList();
+	}
+	
+	private <T> Single<T> cached(Endpoint endpoint, String engineId, Object request, Class<T> type, Single<T> call) {
+		return cached(endpoint, engineId, request, mapper.constructType(type), call);
+	}
+	
+	private <T> Single<T> cached(Endpoint endpoint, String engineId, Object request, JavaType type, Single<T> call) {
+		Single<T> flight = singleFlight != null ? singleFlight.collapse(endpoint, engineId, request, call) : call;
+		return caching != null ? caching.cached(endpoint, engineId, request, type, flight) : flight;
+	}
+	
+	/**
+	 * Checks the request against the engine's context length, as {@link #createCompletion} does, if
+	 * {@link OpenAiServiceBuilder#checkTokenLimits} is enabled, and does nothing otherwise.
+	 *
+	 * @throws com.theokanning.openai.tokenizer.TokenLimitExceededException if a prompt plus {@code maxTokens} is too long
+	 */
+	public void checkCompletion(String engineId, CompletionRequest request) {
+		if (checkTokenLimits) {
+			TokenLimits.checkCompletion(request, contextLength(engineId));
+		}
+	}
+	
+	/**
+	 * @return the context length set for the engine with {@link OpenAiServiceBuilder#contextLength}, or the default
+	 */
+	int contextLength(String engineId) {
+		return contextLengths.getOrDefault(engineId, TokenLimits.DEFAULT_CONTEXT_LENGTH);
+	}
+	
+	private <T> Single<T> checked(Runnable tokenLimitCheck, Single<T> call) {
+		if (!checkTokenLimits) {
+			return call;
+		}
+		return Single.defer(() -> {
+			tokenLimitCheck.run();
+			return call;
+		});
+	}
+	
+	private <T> Single<T> validated(String engineId, Single<T> call) {
+		return validateEngineIds ? engineRegistry.check(engineId).andThen(call) : call;
+	}
+	
+	private <T> Flowable<T> validated(String engineId, Flowable<T> call) {
+		return validateEngineIds ? engineRegistry.check(engineId).andThen(call) : call;
+	}
+	
+	private <T> Flowable<T> checked(Runnable tokenLimitCheck, Flowable<T> call) {
+		if (!checkTokenLimits) {
+			return call;
+		}
+		return Flowable.defer(() -> {
+			tokenLimitCheck.run();
+			return call;
+		});
 	}
 	
 }
\ No newline at end of file
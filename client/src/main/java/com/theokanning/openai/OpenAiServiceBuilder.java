@@ -0,0 +1,493 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.cache.ResponseCache;
+import com.theokanning.openai.metrics.MetricsRecorder;
+import com.theokanning.openai.metrics.OkHttpMetrics;
+import com.theokanning.openai.metrics.TransportGauges;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the http transport of an {@link OpenAiService}, see {@link OpenAiService#builder(String)}.
+ * <p>
+ * Anything that isn't set keeps OkHttp's default, except that idle connections are kept alive for 5 minutes
+ * so that bursty traffic doesn't have to repeat the TLS handshake.
+ * A caller supplied {@link OkHttpClient} is never modified, a derived client sharing its pool and dispatcher is used instead.
+ * If {@link #maxRequests}, {@link #maxRequestsPerHost} or {@link #virtualThreads} is set, the derived client gets a dispatcher
+ * of its own instead, starting from the caller's limits and running on the caller's executor unless virtual threads are used.
+ */
+public class OpenAiServiceBuilder {
+	
+	static final String DEFAULT_BASE_URL = "https://api.openai.com/";
+	
+	static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+	
+	static final Duration DEFAULT_KEEP_ALIVE = Duration.ofMinutes(5);
+	
+	static final Duration DEFAULT_ENGINE_TTL = Duration.ofMinutes(10);
+	
+	final String token;
+	
+	final KeyPool keyPool;
+	
+	String organization;
+	
+	String baseUrl = DEFAULT_BASE_URL;
+	
+	OkHttpClient okHttpClient;
+	
+	Dispatcher dispatcher;
+	
+	ConnectionPool connectionPool;
+	
+	Integer maxIdleConnections;
+	
+	Duration keepAlive;
+	
+	Integer maxRequests;
+	
+	Integer maxRequestsPerHost;
+	
+	List<Protocol> protocols;
+	
+	Duration connectTimeout;
+	
+	Duration readTimeout;
+	
+	Duration writeTimeout;
+	
+	Duration callTimeout;
+	
+	RateLimiter rateLimiter;
+	
+	RetryPolicy retryPolicy = RetryPolicy.none();
+	
+	final Map<Endpoint, RetryPolicy> retryPolicies = new EnumMap<>(Endpoint.class);
+	
+	ResponseCache responseCache;
+	
+	boolean checkTokenLimits;
+	
+	final Map<String, Integer> contextLengths = new HashMap<>();
+	
+	MetricsRecorder metrics = MetricsRecorder.NONE;
+	
+	boolean compactLogprobs;
+	
+	boolean virtualThreads;
+	
+	Duration engineTtl = DEFAULT_ENGINE_TTL;
+	
+	boolean validateEngineIds;
+	
+	boolean singleFlight;
+	
+	HedgePolicy hedgePolicy;
+	
+	CircuitBreaker circuitBreaker;
+	
+	final Map<String, Set<Endpoint>> bulkheads = new LinkedHashMap<>();
+	
+	final Map<String, Integer> bulkheadLimits = new HashMap<>();
+	
+	AdaptiveLimiter adaptiveLimiter;
+	
+	OpenAiServiceBuilder(String token) {
+		this.token = Objects.requireNonNull(token, "token");
+		this.keyPool = null;
+	}
+	
+	OpenAiServiceBuilder(KeyPool keyPool) {
+		this.token = null;
+		this.keyPool = Objects.requireNonNull(keyPool, "keyPool");
+	}
+	
+	/**
+	 * @param organization Optional organization ID if you are part of multiple organizations.
+	 *                     Not used with a {@link KeyPool}, which has an organization per key.
+	 */
+	public OpenAiServiceBuilder organization(String organization) {
+		this.organization = organization;
+		return this;
+	}
+	
+	/**
+	 * Overrides the api url, e.g. to go through a proxy. Must end in a slash.
+	 */
+	public OpenAiServiceBuilder baseUrl(String baseUrl) {
+		this.baseUrl = Objects.requireNonNull(baseUrl, "baseUrl");
+		return this;
+	}
+	
+	/**
+	 * Uses the given client as a base, sharing its connection pool, dispatcher and any interceptors or event listeners.
+	 * The other options on this builder are applied on top of it.
+	 */
+	public OpenAiServiceBuilder okHttpClient(OkHttpClient okHttpClient) {
+		this.okHttpClient = okHttpClient;
+		return this;
+	}
+	
+	/**
+	 * Uses the given dispatcher, which may be shared with other clients.
+	 * {@link #maxRequests} and {@link #maxRequestsPerHost} are applied to it if set.
+	 */
+	public OpenAiServiceBuilder dispatcher(Dispatcher dispatcher) {
+		this.dispatcher = dispatcher;
+		return this;
+	}
+	
+	/**
+	 * Uses the given connection pool, which may be shared with other clients.
+	 * Takes precedence over {@link #maxIdleConnections} and {@link #keepAlive}.
+	 */
+	public OpenAiServiceBuilder connectionPool(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+		return this;
+	}
+	
+	/**
+	 * The maximum number of idle connections kept in the pool. Defaults to 5.
+	 */
+	public OpenAiServiceBuilder maxIdleConnections(int maxIdleConnections) {
+		this.maxIdleConnections = maxIdleConnections;
+		return this;
+	}
+	
+	/**
+	 * How long an idle connection is kept in the pool before it is evicted. Defaults to 5 minutes.
+	 */
+	public OpenAiServiceBuilder keepAlive(Duration keepAlive) {
+		this.keepAlive = keepAlive;
+		return this;
+	}
+	
+	/**
+	 * The maximum number of concurrent requests across all hosts, further requests are queued. OkHttp defaults to 64.
+	 */
+	public OpenAiServiceBuilder maxRequests(int maxRequests) {
+		this.maxRequests = maxRequests;
+		return this;
+	}
+	
+	/**
+	 * The maximum number of concurrent requests to the api host, further requests are queued. OkHttp defaults to 5.
+	 */
+	public OpenAiServiceBuilder maxRequestsPerHost(int maxRequestsPerHost) {
+		this.maxRequestsPerHost = maxRequestsPerHost;
+		return this;
+	}
+	
+	/**
+	 * The protocols to negotiate, in order of preference.
+	 * OkHttp prefers HTTP/2 by default, which multiplexes concurrent requests over a single connection.
+	 * Pass only {@link Protocol#HTTP_1_1} to get one connection per in-flight request instead.
+	 */
+	public OpenAiServiceBuilder protocols(List<Protocol> protocols) {
+		this.protocols = new ArrayList<>(protocols);
+		return this;
+	}
+	
+	public OpenAiServiceBuilder connectTimeout(Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+		return this;
+	}
+	
+	/**
+	 * The maximum time between two reads. Long completions with a large {@code maxTokens} may need more than OkHttp's 10 seconds.
+	 */
+	public OpenAiServiceBuilder readTimeout(Duration readTimeout) {
+		this.readTimeout = readTimeout;
+		return this;
+	}
+	
+	public OpenAiServiceBuilder writeTimeout(Duration writeTimeout) {
+		this.writeTimeout = writeTimeout;
+		return this;
+	}
+	
+	/**
+	 * The maximum time for a whole call once it has left the dispatcher queue, including reading the response body. No limit by default.
+	 */
+	public OpenAiServiceBuilder callTimeout(Duration callTimeout) {
+		this.callTimeout = callTimeout;
+		return this;
+	}
+	
+	/**
+	 * Limits requests and estimated tokens per minute on the client side, see {@link RateLimiter}.
+	 * Calls wait for quota before they are handed to the dispatcher.
+	 */
+	public OpenAiServiceBuilder rateLimiter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+		return this;
+	}
+	
+	/**
+	 * The retry policy for every endpoint that doesn't have its own. By default calls are not retried.
+	 */
+	public OpenAiServiceBuilder retryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy");
+		return this;
+	}
+	
+	/**
+	 * The retry policy for a single endpoint, overriding {@link #retryPolicy(RetryPolicy)}.
+	 */
+	public OpenAiServiceBuilder retryPolicy(Endpoint endpoint, RetryPolicy retryPolicy) {
+		retryPolicies.put(endpoint, Objects.requireNonNull(retryPolicy, "retryPolicy"));
+		return this;
+	}
+	
+	/**
+	 * Answers repeated deterministic calls, like completions with a temperature of 0, searches and classifications, from the cache.
+	 * Calls whose results vary are always sent.
+	 *
+	 * @see com.theokanning.openai.cache.InMemoryResponseCache
+	 * @see com.theokanning.openai.cache.TieredResponseCache
+	 */
+	public OpenAiServiceBuilder responseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+		return this;
+	}
+	
+	/**
+	 * Counts the tokens of completion and search requests locally and fails them with a
+	 * {@link com.theokanning.openai.tokenizer.TokenLimitExceededException} if they exceed the engine limits, instead of sending them.
+	 *
+	 * @see com.theokanning.openai.tokenizer.TokenLimits
+	 */
+	public OpenAiServiceBuilder checkTokenLimits(boolean checkTokenLimits) {
+		this.checkTokenLimits = checkTokenLimits;
+		return this;
+	}
+	
+	/**
+	 * The number of tokens the engine allows for prompt and completion together, for engines with a larger context than
+	 * {@link com.theokanning.openai.tokenizer.TokenLimits#DEFAULT_CONTEXT_LENGTH}, like {@code davinci-codex} with 4096.
+	 * Only used by {@link #checkTokenLimits(boolean)}.
+	 */
+	public OpenAiServiceBuilder contextLength(String engineId, int tokens) {
+		if (tokens < 1) {
+			throw new IllegalArgumentException("The context length must be at least 1: " + tokens);
+		}
+		contextLengths.put(Objects.requireNonNull(engineId, "engineId"), tokens);
+		return this;
+	}
+	
+	/**
+	 * Records latency, queue wait, status codes, retries and body sizes per endpoint, and gauges for the connection pool and dispatcher.
+	 * Replaces the event listener of a client passed to {@link #okHttpClient(OkHttpClient)}.
+	 *
+	 * @see com.theokanning.openai.metrics.ClientMetrics
+	 */
+	public OpenAiServiceBuilder metrics(MetricsRecorder metrics) {
+		this.metrics = Objects.requireNonNull(metrics, "metrics");
+		return this;
+	}
+	
+	/**
+	 * Decodes log probabilities into {@link com.theokanning.openai.completion.CompactLogProbResult}s, which keep them in
+	 * primitive arrays instead of boxed lists and a map per token. Worth enabling for long completions with {@code logprobs} set.
+	 *
+	 * @see com.theokanning.openai.completion.CompactLogProbDeserializer
+	 */
+	public OpenAiServiceBuilder compactLogprobs(boolean compactLogprobs) {
+		this.compactLogprobs = compactLogprobs;
+		return this;
+	}
+	
+	/**
+	 * Runs calls on a new virtual thread each instead of OkHttp's platform thread pool, so blocking methods called from
+	 * virtual threads don't tie up a platform thread while waiting for the response. Requires Java 21 or later.
+	 * <p>
+	 * The dispatcher limits still cap concurrency, raise {@link #maxRequests} and {@link #maxRequestsPerHost} to make use of it.
+	 * Can't be combined with {@link #dispatcher(Dispatcher)}.
+	 * <p>
+	 * Only the calling thread is sure not to be pinned. Before Java 24, a virtual thread in a {@code synchronized} section or in
+	 * {@code wait()} holds on to its carrier, and OkHttp 3 uses both: an HTTP/2 call waits for its response in {@code wait()}.
+	 * HTTP/1.1 calls read the socket outside of them.
+	 *
+	 * @see VirtualThreads#isSupported()
+	 */
+	public OpenAiServiceBuilder virtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+		return this;
+	}
+	
+	/**
+	 * How long the engine list of {@link OpenAiService#engineRegistry} is served before it is reloaded in the background. Defaults to 10 minutes.
+	 */
+	public OpenAiServiceBuilder engineTtl(Duration engineTtl) {
+		this.engineTtl = Objects.requireNonNull(engineTtl, "engineTtl");
+		return this;
+	}
+	
+	/**
+	 * Looks up the engine of completion and search requests in {@link OpenAiService#engineRegistry} and fails them with an
+	 * {@link UnknownEngineException} if it doesn't exist, instead of sending them.
+	 * Requests are sent without the check if the engine list can't be loaded.
+	 */
+	public OpenAiServiceBuilder validateEngineIds(boolean validateEngineIds) {
+		this.validateEngineIds = validateEngineIds;
+		return this;
+	}
+	
+	/**
+	 * Sends completions, searches, answers and classifications that are identical to a call already in flight only once,
+	 * and gives every caller the shared result or error. Calls with a temperature above 0 share one sample as well.
+	 * {@link OpenAiService#getSingleFlightStats()} counts the collapsed calls.
+	 */
+	public OpenAiServiceBuilder singleFlight(boolean singleFlight) {
+		this.singleFlight = singleFlight;
+		return this;
+	}
+	
+	/**
+	 * Sends a duplicate of slow calls that are safe to send twice, and uses the first successful response. By default calls aren't hedged.
+	 *
+	 * @see HedgePolicy
+	 */
+	public OpenAiServiceBuilder hedgePolicy(HedgePolicy hedgePolicy) {
+		this.hedgePolicy = hedgePolicy;
+		return this;
+	}
+	
+	/**
+	 * Fails calls to an endpoint right away while it keeps failing or answering slowly, see {@link CircuitBreaker}.
+	 */
+	public OpenAiServiceBuilder circuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+		return this;
+	}
+	
+	/**
+	 * Gives the endpoints their own concurrency limit and queue, so that slow calls to them can't use up the
+	 * dispatcher's {@link #maxRequests} and hold up other endpoints. Endpoints without a bulkhead share the dispatcher.
+	 * Calling this again with the same name replaces the bulkhead.
+	 *
+	 * @param name        identifies the bulkhead in {@link OpenAiService#getBulkhead(String)}
+	 * @param maxRequests the maximum number of concurrent calls to the endpoints, further calls are queued
+	 * @see Bulkhead
+	 */
+	public OpenAiServiceBuilder bulkhead(String name, int maxRequests, Endpoint... endpoints) {
+		if (maxRequests < 1 || endpoints.length == 0) {
+			throw new IllegalArgumentException("A bulkhead needs at least one endpoint and one request");
+		}
+		Set<Endpoint> group = EnumSet.copyOf(Arrays.asList(endpoints));
+		bulkheads.remove(name);
+		bulkheads.forEach((other, otherGroup) -> {
+			if (!Collections.disjoint(group, otherGroup)) {
+				throw new IllegalArgumentException("Endpoints of bulkhead " + name + " are already in bulkhead " + other);
+			}
+		});
+		bulkheads.put(name, group);
+		bulkheadLimits.put(name, maxRequests);
+		return this;
+	}
+	
+	/**
+	 * Adjusts the concurrency limit of each endpoint to the latency and rate limit headers of its responses,
+	 * see {@link AdaptiveLimiter}. Endpoints without a {@link #bulkhead} get one of their own.
+	 */
+	public OpenAiServiceBuilder adaptiveLimiter(AdaptiveLimiter adaptiveLimiter) {
+		this.adaptiveLimiter = adaptiveLimiter;
+		return this;
+	}
+	
+	public OpenAiService build() {
+		return new OpenAiService(this);
+	}
+	
+	OkHttpClient buildClient() {
+		OkHttpClient.Builder builder = okHttpClient != null ? okHttpClient.newBuilder() : new OkHttpClient.Builder();
+		if (metrics != MetricsRecorder.NONE) {
+			OkHttpMetrics okHttpMetrics = new OkHttpMetrics(metrics);
+			builder.addInterceptor(okHttpMetrics.interceptor());
+			builder.eventListenerFactory(okHttpMetrics.eventListenerFactory());
+		}
+		builder.addInterceptor(keyPool != null ? new KeyPoolInterceptor(keyPool) : new AuthenticationInterceptor(token, organization));
+		if (adaptiveLimiter != null) {
+			builder.addInterceptor(new AdaptiveLimitInterceptor(adaptiveLimiter));
+		}
+		// after the limiters, so that the client's own throttling doesn't count against the endpoint
+		if (circuitBreaker != null) {
+			builder.addInterceptor(new CircuitBreakerInterceptor(circuitBreaker));
+		}
+		
+		if (connectionPool != null) {
+			builder.connectionPool(connectionPool);
+		} else if (okHttpClient == null || maxIdleConnections != null || keepAlive != null) {
+			Duration poolKeepAlive = keepAlive != null ? keepAlive : DEFAULT_KEEP_ALIVE;
+			builder.connectionPool(new ConnectionPool(
+					maxIdleConnections != null ? maxIdleConnections : DEFAULT_MAX_IDLE_CONNECTIONS,
+					poolKeepAlive.toMillis(),
+					TimeUnit.MILLISECONDS
+			));
+		}
+		
+		if (dispatcher != null || maxRequests != null || maxRequestsPerHost != null || virtualThreads) {
+			if (dispatcher != null && virtualThreads) {
+				throw new IllegalStateException("A dispatcher can't be combined with virtual threads, create it with a virtual thread executor instead");
+			}
+			Dispatcher clientDispatcher = dispatcher;
+			if (clientDispatcher == null) {
+				if (virtualThreads) {
+					clientDispatcher = new Dispatcher(VirtualThreads.newVirtualThreadPerTaskExecutor());
+				} else if (okHttpClient != null) {
+					clientDispatcher = new Dispatcher(okHttpClient.dispatcher().executorService());
+				} else {
+					clientDispatcher = new Dispatcher();
+				}
+				if (okHttpClient != null) {
+					// a dispatcher of our own, so that the limits below don't change the caller's client
+					clientDispatcher.setMaxRequests(okHttpClient.dispatcher().getMaxRequests());
+					clientDispatcher.setMaxRequestsPerHost(okHttpClient.dispatcher().getMaxRequestsPerHost());
+				}
+			}
+			if (maxRequests != null) {
+				clientDispatcher.setMaxRequests(maxRequests);
+			}
+			if (maxRequestsPerHost != null) {
+				clientDispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+			}
+			builder.dispatcher(clientDispatcher);
+		}
+		
+		if (protocols != null) {
+			builder.protocols(protocols);
+		}
+		if (connectTimeout != null) {
+			builder.connectTimeout(connectTimeout);
+		}
+		if (readTimeout != null) {
+			builder.readTimeout(readTimeout);
+		}
+		if (writeTimeout != null) {
+			builder.writeTimeout(writeTimeout);
+		}
+		if (callTimeout != null) {
+			builder.callTimeout(callTimeout);
+		}
+		OkHttpClient client = builder.build();
+		metrics.bindTransport(new TransportGauges(client.connectionPool(), client.dispatcher()));
+		return client;
+	}
+	
+}
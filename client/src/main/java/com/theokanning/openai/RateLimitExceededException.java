@@ -0,0 +1,27 @@
+package com.theokanning.openai;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request would exceed the client side quota of a {@link RateLimiter},
+ * either immediately in {@link RateLimiter.Mode#FAIL_FAST} mode or after waiting longer than the allowed maximum.
+ */
+public class RateLimitExceededException extends IOException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final long waitNanos;
+	
+	public RateLimitExceededException(String message, long waitNanos) {
+		super(message);
+		this.waitNanos = waitNanos;
+	}
+	
+	/**
+	 * How long the request would have had to wait for enough quota, in nanoseconds.
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+	
+}
@@ -0,0 +1,59 @@
+package com.theokanning.openai;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OkHttp Interceptor that holds each request back until the {@link RateLimiter} has quota for it.
+ * <p>
+ * The token cost is estimated from the request object passed to {@link OpenAiApi}, which Retrofit attaches to the http request.
+ * Requests that weren't made through Retrofit only count against the request quota.
+ * <p>
+ * For use with your own client: the call waits on OkHttp's dispatcher thread, holding one of its slots, and the wait counts
+ * against the call timeout. {@link OpenAiServiceBuilder#rateLimiter(RateLimiter)} waits before the call is enqueued instead.
+ * Add it before a {@link CircuitBreakerInterceptor}, so that the wait doesn't count as latency of the endpoint.
+ */
+public class RateLimitInterceptor implements Interceptor {
+	
+	private final RateLimiter rateLimiter;
+	
+	public RateLimitInterceptor(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+	
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		int tokens = estimateTokens(request);
+		long waitNanos = rateLimiter.acquire(tokens);
+		if (waitNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				rateLimiter.release(tokens);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for rate limit");
+			}
+		}
+		return chain.proceed(request);
+	}
+	
+	private static int estimateTokens(Request request) {
+		Invocation invocation = request.tag(Invocation.class);
+		if (invocation == null) {
+			return 0;
+		}
+		int tokens = 0;
+		for (Object argument : invocation.arguments()) {
+			tokens += RateLimiter.estimateTokens(argument);
+		}
+		return tokens;
+	}
+	
+}
@@ -0,0 +1,281 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.answer.AnswerRequest;
+import com.theokanning.openai.classification.ClassificationRequest;
+import com.theokanning.openai.completion.CompletionRequest;
+import com.theokanning.openai.search.SearchRequest;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Client side quota for requests per minute and tokens per minute, kept in two token buckets.
+ * <p>
+ * Each bucket holds up to {@link #BURST} of its per-minute quota, so traffic is spread over the minute
+ * instead of exhausting the whole quota in the first few seconds.
+ * Token costs are estimated before sending, see {@link #estimateTokens(Object)}.
+ * <p>
+ * Install it with {@link OpenAiServiceBuilder#rateLimiter(RateLimiter)}, where calls wait for quota before they are enqueued,
+ * without holding a dispatcher thread or counting against the call timeout. Quota taken by a call that is cancelled while
+ * waiting, or that fails before it could be sent, is given back.
+ * With your own client, add a {@link RateLimitInterceptor} instead.
+ * A single limiter can be shared between several services that use the same api key.
+ */
+public class RateLimiter {
+	
+	/**
+	 * Fraction of the per-minute quota that may be sent at once.
+	 */
+	static final double BURST = 1.0 / 6;
+	
+	/**
+	 * The api's default for {@code max_tokens}.
+	 */
+	static final int DEFAULT_MAX_TOKENS = 16;
+	
+	public enum Mode {
+		/**
+		 * Delay requests until there is quota for them, failing only if the wait would exceed the maximum wait.
+		 */
+		WAIT,
+		/**
+		 * Fail requests immediately with a {@link RateLimitExceededException} if there is no quota for them.
+		 */
+		FAIL_FAST
+	}
+	
+	private final TokenBucket requests;
+	
+	private final TokenBucket tokens;
+	
+	private final Mode mode;
+	
+	private final long maxWaitNanos;
+	
+	/**
+	 * Creates a limiter that waits up to a minute for quota.
+	 */
+	public RateLimiter(int requestsPerMinute, int tokensPerMinute) {
+		this(requestsPerMinute, tokensPerMinute, Mode.WAIT, Duration.ofMinutes(1));
+	}
+	
+	/**
+	 * @param requestsPerMinute the request quota
+	 * @param tokensPerMinute   the token quota
+	 * @param mode              whether to wait for quota or fail fast
+	 * @param maxWait           the longest a request may wait in {@link Mode#WAIT} before it fails instead
+	 */
+	public RateLimiter(int requestsPerMinute, int tokensPerMinute, Mode mode, Duration maxWait) {
+		if (requestsPerMinute <= 0 || tokensPerMinute <= 0) {
+			throw new IllegalArgumentException("Quotas must be positive");
+		}
+		long now = System.nanoTime();
+		Duration minute = Duration.ofMinutes(1);
+		this.requests = new TokenBucket(requestsPerMinute, minute, Math.max(1, requestsPerMinute * BURST), now);
+		this.tokens = new TokenBucket(tokensPerMinute, minute, Math.max(1, tokensPerMinute * BURST), now);
+		this.mode = mode;
+		this.maxWaitNanos = maxWait.toNanos();
+	}
+	
+	/**
+	 * Takes quota for one request costing the given number of tokens.
+	 *
+	 * @return how long the caller has to wait before sending, in nanoseconds. The quota is already reserved.
+	 * @throws RateLimitExceededException if there is no quota in {@link Mode#FAIL_FAST} mode,
+	 *                                    or the wait would be longer than the maximum wait
+	 */
+	public synchronized long acquire(int tokenCount) throws RateLimitExceededException {
+		long now = System.nanoTime();
+		requests.refill(now);
+		tokens.refill(now);
+		long waitNanos = Math.max(requests.waitNanos(1), tokens.waitNanos(tokenCount));
+		if (mode == Mode.FAIL_FAST && waitNanos > 0) {
+			throw new RateLimitExceededException("No quota left for a request of " + tokenCount + " tokens", waitNanos);
+		}
+		if (waitNanos > maxWaitNanos) {
+			throw new RateLimitExceededException("A request of " + tokenCount + " tokens would have to wait "
+					+ Duration.ofNanos(waitNanos) + " for quota", waitNanos);
+		}
+		requests.consume(1);
+		tokens.consume(tokenCount);
+		return waitNanos;
+	}
+	
+	/**
+	 * Gives back the quota taken for a request that wasn't sent.
+	 */
+	synchronized void release(int tokenCount) {
+		long now = System.nanoTime();
+		requests.refill(now);
+		tokens.refill(now);
+		requests.refund(1);
+		tokens.refund(tokenCount);
+	}
+	
+	/**
+	 * Takes quota for the call when subscribed to, and subscribes to the call once the quota is available.
+	 * The wait is a timer, so no thread is held.
+	 */
+	<T> Single<T> limit(int tokenCount, Single<T> call) {
+		return Single.defer(() -> {
+			long waitNanos = acquire(tokenCount);
+			AtomicBoolean sent = new AtomicBoolean();
+			Single<T> send = call
+					.doOnSubscribe(disposable -> sent.set(true))
+					.doOnError(error -> releaseIfUnsent(tokenCount, error));
+			return (waitNanos > 0 ? Single.timer(waitNanos, TimeUnit.NANOSECONDS).flatMap(tick -> send) : send)
+					.doOnDispose(() -> releaseIfWaiting(tokenCount, sent));
+		});
+	}
+	
+	/**
+	 * @see #limit(int, Single)
+	 */
+	<T> Flowable<T> limit(int tokenCount, Flowable<T> call) {
+		return Flowable.defer(() -> {
+			long waitNanos = acquire(tokenCount);
+			AtomicBoolean sent = new AtomicBoolean();
+			Flowable<T> send = call
+					.doOnSubscribe(subscription -> sent.set(true))
+					.doOnError(error -> releaseIfUnsent(tokenCount, error));
+			return (waitNanos > 0 ? Flowable.timer(waitNanos, TimeUnit.NANOSECONDS).concatMap(tick -> send) : send)
+					.doOnCancel(() -> releaseIfWaiting(tokenCount, sent));
+		});
+	}
+	
+	private void releaseIfWaiting(int tokenCount, AtomicBoolean sent) {
+		if (!sent.get()) {
+			release(tokenCount);
+		}
+	}
+	
+	/**
+	 * Gives back the quota of a call that failed before the request left the client.
+	 */
+	private void releaseIfUnsent(int tokenCount, Throwable error) {
+		if (error instanceof ConnectException || error instanceof UnknownHostException || error instanceof CircuitBreakerOpenException) {
+			release(tokenCount);
+		}
+	}
+	
+	/**
+	 * The requests that could be sent right now.
+	 */
+	public synchronized double availableRequests() {
+		requests.refill(System.nanoTime());
+		return requests.available();
+	}
+	
+	/**
+	 * The tokens that could be sent right now.
+	 */
+	public synchronized double availableTokens() {
+		tokens.refill(System.nanoTime());
+		return tokens.available();
+	}
+	
+	/**
+	 * Estimates how many tokens of quota a request will use, counting both prompt and generated tokens.
+	 * <p>
+	 * For completions this is the prompt size plus {@code maxTokens} for each of {@code max(n, bestOf)} completions per prompt.
+	 * Bodies made by {@link RequestTemplate#toRequestBody(String)} cost the same as the request with the value filled in.
+	 * Requests without text, like file and engine requests, cost nothing.
+	 */
+	public static int estimateTokens(Object request) {
+		if (request instanceof CompletionRequest) {
+			CompletionRequest completion = (CompletionRequest) request;
+			int prompts = completion.getPrompt() == null ? 0 : completion.getPrompt().size();
+			return textTokens(completion.getPrompt()) + Math.max(1, prompts) * completionTokens(completion);
+		} else if (request instanceof SearchRequest) {
+			SearchRequest search = (SearchRequest) request;
+			return textTokens(search.getDocuments()) + documentCount(search) * textTokens(search.getQuery());
+		} else if (request instanceof ClassificationRequest) {
+			ClassificationRequest classification = (ClassificationRequest) request;
+			return textTokens(classification.getQuery()) + contextTokens(classification);
+		} else if (request instanceof AnswerRequest) {
+			AnswerRequest answer = (AnswerRequest) request;
+			return textTokens(answer.getQuestion()) + contextTokens(answer);
+		} else if (request instanceof RequestTemplate.Body) {
+			return ((RequestTemplate.Body) request).estimatedTokens();
+		}
+		return 0;
+	}
+	
+	/**
+	 * The tokens of a template call that don't depend on the value filled in, which is the prompt of a single prompt
+	 * completion, or the query or question of the other requests.
+	 */
+	static int fixedTemplateTokens(Object request) {
+		if (request instanceof CompletionRequest) {
+			return completionTokens((CompletionRequest) request);
+		} else if (request instanceof SearchRequest) {
+			return textTokens(((SearchRequest) request).getDocuments());
+		} else if (request instanceof ClassificationRequest) {
+			return contextTokens((ClassificationRequest) request);
+		} else if (request instanceof AnswerRequest) {
+			return contextTokens((AnswerRequest) request);
+		}
+		return 0;
+	}
+	
+	/**
+	 * How many times the tokens of the value filled into a template count, since a search query is read once per document.
+	 */
+	static int templateValueWeight(Object request) {
+		return request instanceof SearchRequest ? documentCount((SearchRequest) request) : 1;
+	}
+	
+	/**
+	 * The generated tokens of one prompt.
+	 */
+	private static int completionTokens(CompletionRequest completion) {
+		int maxTokens = completion.getMaxTokens() != null ? completion.getMaxTokens() : DEFAULT_MAX_TOKENS;
+		int n = completion.getN() != null ? completion.getN() : 1;
+		int bestOf = completion.getBestOf() != null ? completion.getBestOf() : 1;
+		return maxTokens * Math.max(n, bestOf);
+	}
+	
+	private static int documentCount(SearchRequest search) {
+		return Math.max(1, search.getDocuments() == null ? 0 : search.getDocuments().size());
+	}
+	
+	private static int contextTokens(ClassificationRequest classification) {
+		int tokens = textTokens(classification.getLabels());
+		if (classification.getExamples() != null) {
+			for (List<String> example : classification.getExamples()) {
+				tokens += textTokens(example);
+			}
+		}
+		return tokens;
+	}
+	
+	private static int contextTokens(AnswerRequest answer) {
+		int maxTokens = answer.getMaxTokens() != null ? answer.getMaxTokens() : DEFAULT_MAX_TOKENS;
+		int n = answer.getN() != null ? answer.getN() : 1;
+		return textTokens(answer.getExamplesContext()) + textTokens(answer.getExamples()) + textTokens(answer.getDocuments()) + maxTokens * n;
+	}
+	
+	/**
+	 * Roughly one token per 4 characters of English text.
+	 */
+	static int textTokens(String text) {
+		return text == null ? 0 : (text.length() + 3) / 4;
+	}
+	
+	static int textTokens(List<String> texts) {
+		int tokens = 0;
+		if (texts != null) {
+			for (String text : texts) {
+				tokens += textTokens(text);
+			}
+		}
+		return tokens;
+	}
+	
+}
@@ -0,0 +1,64 @@
+package com.theokanning.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Derives a canonical key for a request, so that requests with equal content map to the same key
+ * regardless of the order their maps were filled in.
+ */
+final class RequestKeys {
+	
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	private final ObjectMapper canonicalMapper;
+	
+	RequestKeys(ObjectMapper mapper) {
+		canonicalMapper = mapper.copy()
+				.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+				.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+	}
+	
+	/**
+	 * @return the hex encoded SHA-256 hash of the endpoint, engine id and serialized request.
+	 * A template call is hashed as the body it sends, without serializing it again
+	 */
+	String key(Endpoint endpoint, String engineId, Object request) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(endpoint.name().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			if (engineId != null) {
+				digest.update(engineId.getBytes(StandardCharsets.UTF_8));
+			}
+			digest.update((byte) 0);
+			if (request instanceof RequestTemplate.Filled) {
+				RequestTemplate.Filled filled = (RequestTemplate.Filled) request;
+				digest.update(filled.template.prefix());
+				digest.update(RequestTemplate.encode(filled.value));
+				digest.update(filled.template.suffix());
+			} else {
+				digest.update(canonicalMapper.writeValueAsBytes(request));
+			}
+			return hex(digest.digest());
+		} catch (NoSuchAlgorithmException | JsonProcessingException e) {
+			throw new IllegalStateException("Could not create a key for " + endpoint, e);
+		}
+	}
+	
+	private static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+	
+}
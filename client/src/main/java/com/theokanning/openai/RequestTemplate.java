@@ -0,0 +1,175 @@
+package com.theokanning.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A request whose constant fields are serialized once, so that each call only encodes the one field that varies,
+ * e.g. the question of an {@link com.theokanning.openai.answer.AnswerRequest} with a large set of documents.
+ * <p>
+ * Create one with {@link OpenAiService#answerTemplate} or its siblings, and send it with the overloads that take a template.
+ * The request is serialized when the template is created, so later changes to it have no effect.
+ * Token limits aren't checked for template calls, but each call takes the same rate limit quota as the request with the value
+ * filled in, see {@link RateLimiter#estimateTokens(Object)}.
+ *
+ * @param <T> the type of request the template was created from
+ */
+public final class RequestTemplate<T> {
+	
+	private static final MediaType JSON = MediaType.parse("application/json; charset=UTF-8");
+	
+	private final String field;
+	
+	private final byte[] prefix;
+	
+	private final byte[] suffix;
+	
+	private final boolean deterministic;
+	
+	private final int fixedTokens;
+	
+	private final int valueWeight;
+	
+	/**
+	 * Serializes the request with a unique placeholder as the value of the field, and splits the bytes around it.
+	 */
+	RequestTemplate(ObjectMapper mapper, T request, String field) {
+		String placeholder = "openai-template-" + UUID.randomUUID();
+		byte[] bytes;
+		try {
+			ObjectNode tree = mapper.valueToTree(request);
+			tree.put(field, placeholder);
+			bytes = mapper.writeValueAsBytes(tree);
+		} catch (JsonProcessingException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Could not serialize the template request", e);
+		}
+		int start = indexOf(bytes, placeholder.getBytes(StandardCharsets.UTF_8));
+		this.field = field;
+		this.prefix = Arrays.copyOfRange(bytes, 0, start);
+		this.suffix = Arrays.copyOfRange(bytes, start + placeholder.length(), bytes.length);
+		this.deterministic = ResponseCaching.isDeterministic(request);
+		this.fixedTokens = RateLimiter.fixedTemplateTokens(request);
+		this.valueWeight = RateLimiter.templateValueWeight(request);
+	}
+	
+	/**
+	 * The name of the json field whose value each call fills in.
+	 */
+	public String getField() {
+		return field;
+	}
+	
+	/**
+	 * A json body with the given value in the template's field, for use with the {@link OpenAiApi} overloads that take a {@link RequestBody}.
+	 * Only the value is encoded, the rest of the body is copied from the template.
+	 */
+	public RequestBody toRequestBody(String value) {
+		return new Body(encode(value), estimateTokens(value));
+	}
+	
+	boolean isDeterministic() {
+		return deterministic;
+	}
+	
+	/**
+	 * The rate limit tokens of a call with the given value.
+	 */
+	int estimateTokens(String value) {
+		return fixedTokens + valueWeight * RateLimiter.textTokens(value);
+	}
+	
+	/**
+	 * The bytes before the encoded value, ending with its opening quote.
+	 */
+	byte[] prefix() {
+		return prefix;
+	}
+	
+	/**
+	 * The bytes after the encoded value, starting with its closing quote.
+	 */
+	byte[] suffix() {
+		return suffix;
+	}
+	
+	static byte[] encode(String value) {
+		return JsonStringEncoder.getInstance().quoteAsUTF8(value);
+	}
+	
+	private static int indexOf(byte[] bytes, byte[] target) {
+		outer:
+		for (int i = 0; i <= bytes.length - target.length; i++) {
+			for (int j = 0; j < target.length; j++) {
+				if (bytes[i + j] != target[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		throw new IllegalStateException("Placeholder not found in the serialized template");
+	}
+	
+	/**
+	 * A filled in template, which carries its token estimate for {@link RateLimitInterceptor}.
+	 */
+	final class Body extends RequestBody {
+		
+		private final byte[] encoded;
+		
+		private final int estimatedTokens;
+		
+		Body(byte[] encoded, int estimatedTokens) {
+			this.encoded = encoded;
+			this.estimatedTokens = estimatedTokens;
+		}
+		
+		int estimatedTokens() {
+			return estimatedTokens;
+		}
+		
+		@Override
+		public MediaType contentType() {
+			return JSON;
+		}
+		
+		@Override
+		public long contentLength() {
+			return prefix.length + encoded.length + suffix.length;
+		}
+		
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			sink.write(prefix);
+			sink.write(encoded);
+			sink.write(suffix);
+		}
+		
+	}
+	
+	/**
+	 * A template call with its value, used as the request when the response cache is consulted.
+	 */
+	static final class Filled {
+		
+		final RequestTemplate<?> template;
+		
+		final String value;
+		
+		Filled(RequestTemplate<?> template, String value) {
+			this.template = template;
+			this.value = value;
+		}
+		
+	}
+	
+}
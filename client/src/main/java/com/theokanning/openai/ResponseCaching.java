@@ -0,0 +1,103 @@
+package com.theokanning.openai;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.answer.AnswerRequest;
+import com.theokanning.openai.cache.CacheStats;
+import com.theokanning.openai.cache.ResponseCache;
+import com.theokanning.openai.classification.ClassificationRequest;
+import com.theokanning.openai.completion.CompletionRequest;
+import com.theokanning.openai.search.SearchRequest;
+import io.reactivex.Single;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves deterministic calls from a {@link ResponseCache}, and stores their results after a miss.
+ * <p>
+ * Searches are always cached. Completions are cached only when {@code temperature} is explicitly 0,
+ * classifications and answers unless {@code temperature} is above 0, since those default to 0.
+ * <p>
+ * The cache is best effort: an entry that can't be read counts as a miss, and a result that can't be stored is still returned.
+ */
+final class ResponseCaching {
+	
+	private final ResponseCache cache;
+	
+	private final ObjectMapper mapper;
+	
+	private final RequestKeys keys;
+	
+	private final LongAdder hits = new LongAdder();
+	
+	private final LongAdder misses = new LongAdder();
+	
+	private final LongAdder skips = new LongAdder();
+	
+	ResponseCaching(ResponseCache cache, ObjectMapper mapper, RequestKeys keys) {
+		this.cache = cache;
+		this.mapper = mapper;
+		this.keys = keys;
+	}
+	
+	CacheStats stats() {
+		return new CacheStats(hits.sum(), misses.sum(), skips.sum());
+	}
+	
+	<T> Single<T> cached(Endpoint endpoint, String engineId, Object request, JavaType type, Single<T> call) {
+		if (!isDeterministic(request)) {
+			return call.doOnSubscribe(disposable -> skips.increment());
+		}
+		return Single.defer(() -> {
+			String key = keys.key(endpoint, engineId, request);
+			T cached = read(key, type);
+			if (cached != null) {
+				hits.increment();
+				return Single.just(cached);
+			}
+			misses.increment();
+			return call.doOnSuccess(result -> store(key, result));
+		});
+	}
+	
+	/**
+	 * @return the cached result, or null if there is none or it can't be read
+	 */
+	private <T> T read(String key, JavaType type) {
+		try {
+			byte[] cached = cache.get(key);
+			return cached != null ? mapper.readValue(cached, type) : null;
+		} catch (IOException | UncheckedIOException e) {
+			return null;
+		}
+	}
+	
+	private void store(String key, Object result) {
+		try {
+			cache.put(key, mapper.writeValueAsBytes(result));
+		} catch (IOException | UncheckedIOException e) {
+			// the result is returned all the same, it just won't be served from the cache
+		}
+	}
+	
+	static boolean isDeterministic(Object request) {
+		if (request instanceof RequestTemplate.Filled) {
+			return ((RequestTemplate.Filled) request).template.isDeterministic();
+		} else if (request instanceof CompletionRequest) {
+			Double temperature = ((CompletionRequest) request).getTemperature();
+			return temperature != null && temperature == 0 && !Boolean.TRUE.equals(((CompletionRequest) request).getStream());
+		} else if (request instanceof SearchRequest) {
+			return true;
+		} else if (request instanceof ClassificationRequest) {
+			Double temperature = ((ClassificationRequest) request).getTemperature();
+			return temperature == null || temperature == 0;
+		} else if (request instanceof AnswerRequest) {
+			Double temperature = ((AnswerRequest) request).getTemperature();
+			return temperature == null || temperature == 0;
+		}
+		return false;
+	}
+	
+}
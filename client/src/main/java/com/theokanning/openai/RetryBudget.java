@@ -0,0 +1,54 @@
+package com.theokanning.openai;
+
+/**
+ * Caps retries to a fraction of the calls made, so that retries can't multiply the load on an api that is already overloaded.
+ * <p>
+ * Every call deposits {@code ratio} into the budget and every retry withdraws one, with a small reserve
+ * so that low traffic can still retry. The balance never grows past twice the reserve, so quiet periods can't save up
+ * retries for a later outage. A budget can be shared between policies to cap retries across endpoints.
+ */
+public class RetryBudget {
+	
+	private final double ratio;
+	
+	private final double maxBalance;
+	
+	private double balance;
+	
+	/**
+	 * @param ratio      the fraction of calls that may be retried, e.g. 0.1 for 10%
+	 * @param minRetries the number of retries allowed regardless of traffic, which is also the initial balance
+	 */
+	public RetryBudget(double ratio, int minRetries) {
+		if (ratio < 0) {
+			throw new IllegalArgumentException("Ratio must not be negative");
+		}
+		this.ratio = ratio;
+		this.maxBalance = Math.max(2 * minRetries, 1);
+		this.balance = minRetries;
+	}
+	
+	/**
+	 * Allows retrying 10% of calls, with 10 retries in reserve.
+	 */
+	public static RetryBudget defaultBudget() {
+		return new RetryBudget(0.1, 10);
+	}
+	
+	synchronized void deposit() {
+		balance = Math.min(maxBalance, balance + ratio);
+	}
+	
+	synchronized boolean tryWithdraw() {
+		if (balance < 1) {
+			return false;
+		}
+		balance -= 1;
+		return true;
+	}
+	
+	public synchronized double getBalance() {
+		return balance;
+	}
+	
+}
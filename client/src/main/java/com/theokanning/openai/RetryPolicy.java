@@ -0,0 +1,254 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.MetricsRecorder;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import retrofit2.HttpException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries failed calls with exponential backoff and decorrelated jitter.
+ * <p>
+ * A call is retried when it fails with a 408, 429 or 5xx status, or with a network error.
+ * If the response has a {@code Retry-After} header the retry waits at least that long,
+ * and gives up if that is longer than {@link Builder#maxRetryAfter}.
+ * Retries are drawn from a {@link RetryBudget}, and only idempotent endpoints are retried unless
+ * {@link Builder#retryNonIdempotent} is set.
+ * <p>
+ * Set a policy for all endpoints with {@link OpenAiServiceBuilder#retryPolicy(RetryPolicy)},
+ * or for a single one with {@link OpenAiServiceBuilder#retryPolicy(Endpoint, RetryPolicy)}.
+ *
+ * @see <a href="https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/">Exponential Backoff And Jitter</a>
+ */
+public class RetryPolicy {
+	
+	private static final Set<Integer> RETRYABLE_STATUS_CODES = new HashSet<>(Arrays.asList(408, 429, 500, 502, 503, 504));
+	
+	private static final RetryPolicy NONE = builder().maxRetries(0).build();
+	
+	private final int maxRetries;
+	
+	private final long baseDelayNanos;
+	
+	private final long maxDelayNanos;
+	
+	private final long maxRetryAfterNanos;
+	
+	private final boolean retryNonIdempotent;
+	
+	private final RetryBudget budget;
+	
+	private RetryPolicy(Builder builder) {
+		this.maxRetries = builder.maxRetries;
+		this.baseDelayNanos = builder.baseDelay.toNanos();
+		this.maxDelayNanos = builder.maxDelay.toNanos();
+		this.maxRetryAfterNanos = builder.maxRetryAfter.toNanos();
+		this.retryNonIdempotent = builder.retryNonIdempotent;
+		this.budget = builder.budget != null ? builder.budget : RetryBudget.defaultBudget();
+	}
+	
+	/**
+	 * A policy that never retries.
+	 */
+	public static RetryPolicy none() {
+		return NONE;
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+	
+	public boolean isRetryNonIdempotent() {
+		return retryNonIdempotent;
+	}
+	
+	public RetryBudget getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * Whether calls to the given endpoint are retried at all under this policy.
+	 */
+	public boolean appliesTo(Endpoint endpoint) {
+		return maxRetries > 0 && (endpoint.isIdempotent() || retryNonIdempotent);
+	}
+	
+	/**
+	 * Resubscribes to the call when it fails with a retryable error, after a backoff delay.
+	 * The call must be cold, so that each subscription makes a new http request.
+	 */
+	<T> Single<T> apply(Endpoint endpoint, Single<T> call) {
+		return apply(endpoint, call, MetricsRecorder.NONE);
+	}
+	
+	/**
+	 * Like {@link #apply(Endpoint, Single)}, reporting each retry to the given recorder.
+	 */
+	<T> Single<T> apply(Endpoint endpoint, Single<T> call, MetricsRecorder metrics) {
+		if (!appliesTo(endpoint)) {
+			return call;
+		}
+		return Single.defer(() -> {
+			budget.deposit();
+			AtomicInteger retries = new AtomicInteger();
+			AtomicLong previousDelay = new AtomicLong(baseDelayNanos);
+			return call.retryWhen(errors -> errors.flatMap(error -> {
+				long delayNanos = retryDelayNanos(error, retries.incrementAndGet(), previousDelay);
+				if (delayNanos < 0) {
+					return Flowable.error(error);
+				}
+				metrics.retried(endpoint, error);
+				return Flowable.timer(delayNanos, TimeUnit.NANOSECONDS);
+			}));
+		});
+	}
+	
+	/**
+	 * @return the delay before the given retry, or -1 if the call should not be retried
+	 */
+	long retryDelayNanos(Throwable error, int retry, AtomicLong previousDelay) {
+		if (retry > maxRetries || !isRetryable(error)) {
+			return -1;
+		}
+		long retryAfterNanos = retryAfterNanos(error);
+		if (retryAfterNanos > maxRetryAfterNanos || !budget.tryWithdraw()) {
+			return -1;
+		}
+		long upper = Math.max(baseDelayNanos + 1, Math.min(maxDelayNanos, previousDelay.get() * 3));
+		long delayNanos = Math.min(maxDelayNanos, ThreadLocalRandom.current().nextLong(baseDelayNanos, upper));
+		previousDelay.set(delayNanos);
+		return Math.max(delayNanos, retryAfterNanos);
+	}
+	
+	static boolean isRetryable(Throwable error) {
+		if (error instanceof HttpException) {
+			return RETRYABLE_STATUS_CODES.contains(((HttpException) error).code());
+		}
+		if (error instanceof RateLimitExceededException || error instanceof CircuitBreakerOpenException) {
+			return false;
+		}
+		if (error instanceof InterruptedIOException) {
+			return error instanceof SocketTimeoutException;
+		}
+		return error instanceof IOException;
+	}
+	
+	/**
+	 * Reads the {@code Retry-After} header, which holds either a number of seconds or an http date.
+	 *
+	 * @return the requested delay, or 0 if there is none
+	 */
+	static long retryAfterNanos(Throwable error) {
+		if (!(error instanceof HttpException) || ((HttpException) error).response() == null) {
+			return 0;
+		}
+		String retryAfter = ((HttpException) error).response().headers().get("Retry-After");
+		if (retryAfter == null) {
+			return 0;
+		}
+		try {
+			return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(retryAfter.trim())));
+		} catch (NumberFormatException e) {
+			try {
+				ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+			} catch (DateTimeParseException ignored) {
+				return 0;
+			}
+		}
+	}
+	
+	public static class Builder {
+		
+		private int maxRetries = 3;
+		
+		private Duration baseDelay = Duration.ofMillis(500);
+		
+		private Duration maxDelay = Duration.ofSeconds(20);
+		
+		private Duration maxRetryAfter = Duration.ofSeconds(60);
+		
+		private boolean retryNonIdempotent;
+		
+		private RetryBudget budget;
+		
+		Builder() {
+		}
+		
+		/**
+		 * The number of retries after the first attempt. Defaults to 3.
+		 */
+		public Builder maxRetries(int maxRetries) {
+			this.maxRetries = maxRetries;
+			return this;
+		}
+		
+		/**
+		 * The shortest delay between attempts. Defaults to 500 milliseconds.
+		 */
+		public Builder baseDelay(Duration baseDelay) {
+			this.baseDelay = baseDelay;
+			return this;
+		}
+		
+		/**
+		 * The longest delay between attempts, unless the server asks for longer with {@code Retry-After}. Defaults to 20 seconds.
+		 */
+		public Builder maxDelay(Duration maxDelay) {
+			this.maxDelay = maxDelay;
+			return this;
+		}
+		
+		/**
+		 * Gives up instead of retrying when the server asks to wait longer than this. Defaults to 60 seconds.
+		 */
+		public Builder maxRetryAfter(Duration maxRetryAfter) {
+			this.maxRetryAfter = maxRetryAfter;
+			return this;
+		}
+		
+		/**
+		 * Also retry endpoints that aren't idempotent, like completions and fine tune creation.
+		 * A retried call may be processed, and billed, more than once.
+		 */
+		public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+			this.retryNonIdempotent = retryNonIdempotent;
+			return this;
+		}
+		
+		/**
+		 * The budget retries are drawn from. Defaults to a new {@link RetryBudget#defaultBudget()} per policy.
+		 */
+		public Builder budget(RetryBudget budget) {
+			this.budget = budget;
+			return this;
+		}
+		
+		public RetryPolicy build() {
+			if (baseDelay.isNegative() || baseDelay.isZero() || maxDelay.compareTo(baseDelay) < 0) {
+				throw new IllegalArgumentException("Delays must be positive, with the max delay at least the base delay");
+			}
+			return new RetryPolicy(this);
+		}
+		
+	}
+	
+}
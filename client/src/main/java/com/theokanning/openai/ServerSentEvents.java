@@ -0,0 +1,85 @@
+package com.theokanning.openai;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.io.IOException;
+
+/**
+ * Reads a text/event-stream response incrementally and emits the data payload of each event.
+ * <p>
+ * Only the data-only event streams sent by the OpenAI api are supported, event names and ids are ignored.
+ * The stream completes when the server sends {@code [DONE]} or closes the connection.
+ */
+final class ServerSentEvents {
+	
+	static final String DONE = "[DONE]";
+	
+	private ServerSentEvents() {
+	}
+	
+	/**
+	 * Enqueues the call when subscribed to, and emits the data of each event as soon as it has been read.
+	 * Cancelling the subscription cancels the call, which closes the connection.
+	 */
+	static Flowable<String> stream(Call<ResponseBody> call) {
+		return Flowable.create(emitter -> {
+			Call<ResponseBody> streamCall = call.isExecuted() ? call.clone() : call;
+			emitter.setCancellable(streamCall::cancel);
+			streamCall.enqueue(new Callback<ResponseBody>() {
+				@Override
+				public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+					if (!response.isSuccessful()) {
+						emitter.tryOnError(new HttpException(response));
+						return;
+					}
+					try (ResponseBody body = response.body()) {
+						read(body.source(), emitter);
+					} catch (IOException e) {
+						emitter.tryOnError(e);
+					}
+				}
+				
+				@Override
+				public void onFailure(Call<ResponseBody> call, Throwable t) {
+					emitter.tryOnError(t);
+				}
+			});
+		}, BackpressureStrategy.BUFFER);
+	}
+	
+	private static void read(BufferedSource source, FlowableEmitter<String> emitter) throws IOException {
+		StringBuilder data = new StringBuilder();
+		String line;
+		while (!emitter.isCancelled() && (line = source.readUtf8Line()) != null) {
+			if (line.isEmpty()) {
+				if (data.length() > 0) {
+					String event = data.toString();
+					data.setLength(0);
+					if (DONE.equals(event)) {
+						break;
+					}
+					emitter.onNext(event);
+				}
+			} else if (line.startsWith("data:")) {
+				if (data.length() > 0) {
+					data.append('\n');
+				}
+				int start = line.startsWith("data: ") ? 6 : 5;
+				data.append(line, start, line.length());
+			}
+		}
+		if (data.length() > 0 && !DONE.contentEquals(data)) {
+			emitter.onNext(data.toString());
+		}
+		emitter.onComplete();
+	}
+	
+}
@@ -0,0 +1,86 @@
+package com.theokanning.openai;
+
+import io.reactivex.Single;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collapses concurrent calls with the same request key into one, so that identical requests made at the same time
+ * are only sent once and every caller receives its result or error.
+ * <p>
+ * A caller that disposes only detaches itself. The shared call is cancelled once every caller has disposed,
+ * and a call is only shared while it is in flight, a request made after it has finished is sent again.
+ * A caller that joined just before the call finished gets its result, without sending the request again.
+ */
+final class SingleFlight {
+	
+	private final RequestKeys keys;
+	
+	private final ConcurrentMap<String, Single<?>> flights = new ConcurrentHashMap<>();
+	
+	private final SingleFlightStats stats = new SingleFlightStats();
+	
+	SingleFlight(RequestKeys keys) {
+		this.keys = keys;
+	}
+	
+	SingleFlightStats stats() {
+		return stats;
+	}
+	
+	@SuppressWarnings("unchecked")
+	<T> Single<T> collapse(Endpoint endpoint, String engineId, Object request, Single<T> call) {
+		return Single.defer(() -> {
+			String key = keys.key(endpoint, engineId, request);
+			boolean[] created = new boolean[1];
+			Single<T> flight = (Single<T>) flights.computeIfAbsent(key, k -> {
+				created[0] = true;
+				return share(k, call);
+			});
+			if (created[0]) {
+				stats.recordFlight();
+			} else {
+				stats.recordCollapsed();
+			}
+			return flight;
+		});
+	}
+	
+	/**
+	 * The flight is removed before its result is delivered, so that no new caller can attach to a finished call.
+	 * A caller that got the flight before that but subscribes after the result was delivered reconnects to the source,
+	 * which then replays the result instead of sending the call again.
+	 */
+	<T> Single<T> share(String key, Single<T> call) {
+		AtomicReference<Single<T>> self = new AtomicReference<>();
+		AtomicReference<Single<T>> outcome = new AtomicReference<>();
+		AtomicBoolean sent = new AtomicBoolean();
+		Single<T> source = Single.defer(() -> {
+			Single<T> finished = outcome.get();
+			if (finished != null) {
+				return finished;
+			}
+			if (sent.getAndSet(true)) {
+				// every caller had cancelled the call before a late one subscribed
+				stats.recordFlight();
+			}
+			return call
+					.doOnEvent((result, error) -> {
+						outcome.set(error == null ? Single.just(result) : Single.error(error));
+						flights.remove(key, self.get());
+					})
+					.doOnDispose(() -> flights.remove(key, self.get()));
+		});
+		Single<T> shared = source
+				.toObservable()
+				.publish()
+				.refCount()
+				.singleOrError();
+		self.set(shared);
+		return shared;
+	}
+	
+}
@@ -0,0 +1,50 @@
+package com.theokanning.openai;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many calls were collapsed into an identical call already in flight, see {@link OpenAiServiceBuilder#singleFlight(boolean)}.
+ */
+public class SingleFlightStats {
+	
+	private final LongAdder flights = new LongAdder();
+	
+	private final LongAdder collapsed = new LongAdder();
+	
+	void recordFlight() {
+		flights.increment();
+	}
+	
+	void recordCollapsed() {
+		collapsed.increment();
+	}
+	
+	/**
+	 * Calls that were sent to the api.
+	 */
+	public long getFlights() {
+		return flights.sum();
+	}
+	
+	/**
+	 * Calls that received the result of an identical call in flight instead of being sent.
+	 */
+	public long getCollapsed() {
+		return collapsed.sum();
+	}
+	
+	/**
+	 * The fraction of calls that were collapsed.
+	 */
+	public double getCollapseRate() {
+		long collapsedCount = getCollapsed();
+		long total = collapsedCount + getFlights();
+		return total == 0 ? 0 : (double) collapsedCount / total;
+	}
+	
+	@Override
+	public String toString() {
+		return "SingleFlightStats(flights=" + getFlights() + ", collapsed=" + getCollapsed() + ")";
+	}
+	
+}
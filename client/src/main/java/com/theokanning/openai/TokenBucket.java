@@ -0,0 +1,61 @@
+package com.theokanning.openai;
+
+import java.time.Duration;
+
+/**
+ * A token bucket that refills continuously and lets callers reserve permits ahead of time.
+ * <p>
+ * Reserving more permits than are available drives the bucket into debt, which later callers wait out,
+ * so a single request larger than the bucket's capacity still gets through eventually.
+ * Not thread safe, callers synchronize externally.
+ */
+final class TokenBucket {
+	
+	private final double capacity;
+	
+	private final double permitsPerNano;
+	
+	private double available;
+	
+	private long lastRefillNanos;
+	
+	TokenBucket(long permitsPerPeriod, Duration period, double capacity, long nowNanos) {
+		this.capacity = capacity;
+		this.permitsPerNano = (double) permitsPerPeriod / period.toNanos();
+		this.available = capacity;
+		this.lastRefillNanos = nowNanos;
+	}
+	
+	void refill(long nowNanos) {
+		long elapsed = nowNanos - lastRefillNanos;
+		if (elapsed > 0) {
+			available = Math.min(capacity, available + elapsed * permitsPerNano);
+			lastRefillNanos = nowNanos;
+		}
+	}
+	
+	/**
+	 * How long until the given number of permits could be taken without going into debt,
+	 * requests larger than the capacity only wait for a full bucket.
+	 */
+	long waitNanos(double permits) {
+		double missing = Math.min(permits, capacity) - available;
+		return missing <= 0 ? 0 : (long) Math.ceil(missing / permitsPerNano);
+	}
+	
+	void consume(double permits) {
+		available -= permits;
+	}
+	
+	/**
+	 * Gives back permits that were consumed but not used.
+	 */
+	void refund(double permits) {
+		available = Math.min(capacity, available + permits);
+	}
+	
+	double available() {
+		return available;
+	}
+	
+}
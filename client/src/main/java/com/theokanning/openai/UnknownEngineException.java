@@ -0,0 +1,22 @@
+package com.theokanning.openai;
+
+/**
+ * Thrown instead of sending a request for an engine that isn't in the engine list,
+ * see {@link OpenAiServiceBuilder#validateEngineIds(boolean)}.
+ */
+public class UnknownEngineException extends IllegalArgumentException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final String engineId;
+	
+	public UnknownEngineException(String engineId) {
+		super("Unknown engine: " + engineId);
+		this.engineId = engineId;
+	}
+	
+	public String getEngineId() {
+		return engineId;
+	}
+	
+}
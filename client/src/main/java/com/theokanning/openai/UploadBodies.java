@@ -0,0 +1,195 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.files.DatasetProducer;
+import com.theokanning.openai.files.DatasetRecord;
+import com.theokanning.openai.files.DatasetWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Request bodies that stream a file into the multipart upload in fixed size chunks, so that memory use doesn't grow with the file.
+ * <p>
+ * Files are transferred with {@link FileChannel#transferTo}, which lets the JDK read them through the page cache instead of
+ * a heap buffer. The bytes still pass through OkHttp's pooled segments on their way to the socket, since they have to
+ * be encrypted for TLS, but no buffer the size of the file is ever allocated.
+ */
+final class UploadBodies {
+	
+	static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+	
+	static final int CHUNK_SIZE = 64 * 1024;
+	
+	private UploadBodies() {
+	}
+	
+	/**
+	 * A body that reopens the file each time it is written, so it can be retried.
+	 */
+	static RequestBody of(Path path, UploadProgressListener listener) {
+		return new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				return OCTET_STREAM;
+			}
+			
+			@Override
+			public long contentLength() throws IOException {
+				return Files.size(path);
+			}
+			
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+					transfer(channel, channel.size(), sink, listener);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * A one-shot body reading the stream until it ends. The stream isn't closed.
+	 *
+	 * @param contentLength the number of bytes in the stream, or -1 to send it with chunked transfer encoding
+	 */
+	static RequestBody of(InputStream in, long contentLength, UploadProgressListener listener) {
+		return of(Channels.newChannel(in), contentLength, listener);
+	}
+	
+	/**
+	 * A one-shot body reading the channel until it ends. The channel isn't closed.
+	 *
+	 * @param contentLength the number of bytes in the channel, or -1 to send it with chunked transfer encoding
+	 */
+	static RequestBody of(ReadableByteChannel channel, long contentLength, UploadProgressListener listener) {
+		AtomicBoolean written = new AtomicBoolean();
+		return new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				return OCTET_STREAM;
+			}
+			
+			@Override
+			public long contentLength() {
+				return contentLength;
+			}
+			
+			@Override
+			public boolean isOneShot() {
+				return true;
+			}
+			
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				if (!written.compareAndSet(false, true)) {
+					throw new IOException("A stream upload can only be sent once");
+				}
+				transfer(channel, contentLength, sink, listener);
+			}
+		};
+	}
+	
+	/**
+	 * A one-shot body that runs the producer while the request is sent, with chunked transfer encoding.
+	 */
+	static <T extends DatasetRecord> RequestBody of(DatasetProducer<T> producer) {
+		AtomicBoolean written = new AtomicBoolean();
+		return new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				return OCTET_STREAM;
+			}
+			
+			@Override
+			public boolean isOneShot() {
+				return true;
+			}
+			
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				if (!written.compareAndSet(false, true)) {
+					throw new IOException("A streamed dataset can only be sent once");
+				}
+				try (DatasetWriter<T> writer = new DatasetWriter<>(unclosable(sink))) {
+					producer.writeTo(writer);
+				} catch (RuntimeException e) {
+					throw new IOException("Writing the dataset failed: " + e.getMessage(), e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * The sink is closed by OkHttp once the body has been written, so the writer may only flush it.
+	 */
+	private static OutputStream unclosable(BufferedSink sink) {
+		return new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				sink.writeByte(b);
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				sink.write(b, off, len);
+			}
+			
+			@Override
+			public void flush() throws IOException {
+				sink.emit();
+			}
+			
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+	
+	private static void transfer(ReadableByteChannel source, long contentLength, BufferedSink sink, UploadProgressListener listener) throws IOException {
+		long total = 0;
+		if (source instanceof FileChannel) {
+			FileChannel file = (FileChannel) source;
+			long position = file.position();
+			long transferred;
+			while ((transferred = file.transferTo(position + total, CHUNK_SIZE, sink)) > 0) {
+				total += transferred;
+				progress(listener, total, contentLength);
+			}
+		} else {
+			ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+			int read;
+			while ((read = source.read(buffer)) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					sink.write(buffer);
+				}
+				buffer.clear();
+				total += read;
+				progress(listener, total, contentLength);
+			}
+		}
+		if (contentLength >= 0 && total != contentLength) {
+			throw new IOException("Expected " + contentLength + " bytes but the upload source had " + total);
+		}
+	}
+	
+	private static void progress(UploadProgressListener listener, long total, long contentLength) {
+		if (listener != null) {
+			listener.onProgress(total, contentLength);
+		}
+	}
+	
+}
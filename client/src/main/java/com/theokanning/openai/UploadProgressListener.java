@@ -0,0 +1,17 @@
+package com.theokanning.openai;
+
+/**
+ * Callback for the progress of a file upload, see {@link FileService#uploadFile(java.nio.file.Path, com.theokanning.openai.files.Purpose, UploadProgressListener)}.
+ * <p>
+ * Called on the OkHttp thread writing the request, after each chunk has been handed to the connection, so it should return quickly.
+ * If the upload is retried, progress starts again from zero.
+ */
+public interface UploadProgressListener {
+	
+	/**
+	 * @param bytesWritten  the number of file bytes written so far
+	 * @param contentLength the size of the file, or -1 if it isn't known up front
+	 */
+	void onProgress(long bytesWritten, long contentLength);
+	
+}
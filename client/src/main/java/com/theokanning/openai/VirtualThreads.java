@@ -0,0 +1,54 @@
+package com.theokanning.openai;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates virtual thread executors on Java 21 and later, while the client itself still runs on Java 8.
+ */
+public final class VirtualThreads {
+	
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findFactory();
+	
+	private VirtualThreads() {
+	}
+	
+	/**
+	 * Whether the running JVM supports virtual threads.
+	 */
+	public static boolean isSupported() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+	
+	/**
+	 * Creates an executor that starts a new virtual thread for each task.
+	 *
+	 * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running on " + System.getProperty("java.version"));
+		}
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Could not create a virtual thread executor", e);
+		}
+	}
+	
+	/**
+	 * Looks up {@code Executors.newVirtualThreadPerTaskExecutor()} and checks that it works,
+	 * on Java 19 and 20 it exists but fails unless preview features are enabled.
+	 */
+	private static Method findFactory() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			((ExecutorService) factory.invoke(null)).shutdown();
+			return factory;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,55 @@
+package com.theokanning.openai.cache;
+
+/**
+ * How calls were served by a {@link ResponseCache}, as of when the stats were taken.
+ */
+public final class CacheStats {
+	
+	private final long hits;
+	
+	private final long misses;
+	
+	private final long skips;
+	
+	public CacheStats(long hits, long misses, long skips) {
+		this.hits = hits;
+		this.misses = misses;
+		this.skips = skips;
+	}
+	
+	/**
+	 * Calls answered from the cache.
+	 */
+	public long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Cacheable calls that had to be sent to the api, including those whose cache entry couldn't be read.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Calls that bypassed the cache because their result isn't deterministic.
+	 */
+	public long getSkips() {
+		return skips;
+	}
+	
+	/**
+	 * The fraction of cacheable calls that were answered from the cache.
+	 */
+	public double getHitRate() {
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+	
+	@Override
+	public String toString() {
+		return "CacheStats(hits=" + getHits() + ", misses=" + getMisses() + ", skips=" + getSkips() + ")";
+	}
+	
+}
@@ -0,0 +1,63 @@
+package com.theokanning.openai.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * Stores each response as a file in a directory, so cached responses survive restarts and can be shared between processes.
+ * <p>
+ * Entries expire based on the file's modification time. Expired files are deleted when they are next read,
+ * nothing else limits the size of the directory.
+ */
+public class DiskResponseCache implements ResponseCache {
+	
+	private final Path directory;
+	
+	private final long ttlMillis;
+	
+	/**
+	 * @param directory the directory to store responses in, created if it doesn't exist
+	 * @param ttl       how long a response stays valid after it was stored
+	 */
+	public DiskResponseCache(Path directory, Duration ttl) {
+		try {
+			this.directory = Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.ttlMillis = ttl.toMillis();
+	}
+	
+	@Override
+	public byte[] get(String key) {
+		Path file = directory.resolve(key);
+		try {
+			if (System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() > ttlMillis) {
+				Files.deleteIfExists(file);
+				return null;
+			}
+			return Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public void put(String key, byte[] response) {
+		try {
+			Path temp = Files.createTempFile(directory, key, ".tmp");
+			Files.write(temp, response);
+			Files.move(temp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+}
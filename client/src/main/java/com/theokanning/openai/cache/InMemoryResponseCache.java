@@ -0,0 +1,86 @@
+package com.theokanning.openai.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache bounded by the total size of the stored responses, whose entries expire after a fixed time.
+ */
+public class InMemoryResponseCache implements ResponseCache {
+	
+	private final long maxBytes;
+	
+	private final long ttlNanos;
+	
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private long bytes;
+	
+	/**
+	 * @param maxBytes the most response bytes to keep, least recently used responses are evicted first
+	 * @param ttl      how long a response stays valid after it was stored
+	 */
+	public InMemoryResponseCache(long maxBytes, Duration ttl) {
+		this.maxBytes = maxBytes;
+		this.ttlNanos = ttl.toNanos();
+	}
+	
+	@Override
+	public synchronized byte[] get(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (System.nanoTime() - entry.storedNanos > ttlNanos) {
+			remove(key);
+			return null;
+		}
+		return entry.response;
+	}
+	
+	@Override
+	public synchronized void put(String key, byte[] response) {
+		if (response.length > maxBytes) {
+			return;
+		}
+		remove(key);
+		entries.put(key, new Entry(response, System.nanoTime()));
+		bytes += response.length;
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			bytes -= eldest.next().getValue().response.length;
+			eldest.remove();
+		}
+	}
+	
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	public synchronized long sizeInBytes() {
+		return bytes;
+	}
+	
+	private void remove(String key) {
+		Entry removed = entries.remove(key);
+		if (removed != null) {
+			bytes -= removed.response.length;
+		}
+	}
+	
+	private static final class Entry {
+		
+		final byte[] response;
+		
+		final long storedNanos;
+		
+		Entry(byte[] response, long storedNanos) {
+			this.response = response;
+			this.storedNanos = storedNanos;
+		}
+		
+	}
+	
+}
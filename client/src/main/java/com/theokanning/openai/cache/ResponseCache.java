@@ -0,0 +1,22 @@
+package com.theokanning.openai.cache;
+
+/**
+ * Storage for serialized api responses, keyed by a hash of the request.
+ * <p>
+ * Implementations must be thread safe, and may drop entries at any time. Storage failures should be thrown as
+ * {@link java.io.UncheckedIOException}, the call then goes on without the cache.
+ *
+ * @see InMemoryResponseCache
+ * @see DiskResponseCache
+ * @see TieredResponseCache
+ */
+public interface ResponseCache {
+	
+	/**
+	 * @return the cached response, or null if there is none or it has expired
+	 */
+	byte[] get(String key);
+	
+	void put(String key, byte[] response);
+	
+}
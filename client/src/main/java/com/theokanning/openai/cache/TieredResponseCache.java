@@ -0,0 +1,42 @@
+package com.theokanning.openai.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Looks responses up in each tier in turn, typically a small {@link InMemoryResponseCache} in front of a {@link DiskResponseCache}.
+ * Responses found in a slower tier are copied into the faster ones, and new responses are stored in every tier.
+ */
+public class TieredResponseCache implements ResponseCache {
+	
+	private final List<ResponseCache> tiers;
+	
+	/**
+	 * @param tiers the caches to use, fastest first
+	 */
+	public TieredResponseCache(ResponseCache... tiers) {
+		this.tiers = Arrays.asList(tiers.clone());
+	}
+	
+	@Override
+	public byte[] get(String key) {
+		for (int i = 0; i < tiers.size(); i++) {
+			byte[] response = tiers.get(i).get(key);
+			if (response != null) {
+				for (int j = 0; j < i; j++) {
+					tiers.get(j).put(key, response);
+				}
+				return response;
+			}
+		}
+		return null;
+	}
+	
+	@Override
+	public void put(String key, byte[] response) {
+		for (ResponseCache tier : tiers) {
+			tier.put(key, response);
+		}
+	}
+	
+}
@@ -0,0 +1,149 @@
+package com.theokanning.openai.classification;
+
+import com.theokanning.openai.answer.Document;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Label distribution and confidence of classification results, updated as they arrive. Safe for concurrent use.
+ * <p>
+ * The api doesn't return a probability for the label, so the confidence of a result is the share of its selected
+ * examples that carry the same label, see {@link #confidence(ClassificationResult)}.
+ */
+public class ClassificationStats {
+	
+	/**
+	 * The number of buckets of {@link #getConfidenceHistogram()}, each covering a tenth of the range from 0 to 1.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 10;
+	
+	private final Map<String, LabelStats> labels = new ConcurrentHashMap<>();
+	
+	private final LongAdder count = new LongAdder();
+	
+	private final LongAdder failures = new LongAdder();
+	
+	private final LongAdder confidenceCount = new LongAdder();
+	
+	private final DoubleAdder confidenceSum = new DoubleAdder();
+	
+	private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+	
+	/**
+	 * @return the share of the result's selected examples whose label is the predicted one,
+	 * or NaN if the examples weren't returned or don't have labels
+	 */
+	public static double confidence(ClassificationResult result) {
+		if (result.getLabel() == null || result.getSelectedExamples() == null) {
+			return Double.NaN;
+		}
+		int labelled = 0;
+		int agreeing = 0;
+		for (Document example : result.getSelectedExamples()) {
+			if (example.getLabel() != null) {
+				labelled++;
+				if (example.getLabel().equals(result.getLabel())) {
+					agreeing++;
+				}
+			}
+		}
+		return labelled == 0 ? Double.NaN : (double) agreeing / labelled;
+	}
+	
+	public void record(ClassificationResult result) {
+		count.increment();
+		LabelStats label = labels.computeIfAbsent(String.valueOf(result.getLabel()), key -> new LabelStats());
+		label.count.increment();
+		double confidence = confidence(result);
+		if (!Double.isNaN(confidence)) {
+			label.confidenceCount.increment();
+			label.confidenceSum.add(confidence);
+			confidenceCount.increment();
+			confidenceSum.add(confidence);
+			histogram.incrementAndGet(Math.min(HISTOGRAM_BUCKETS - 1, (int) (confidence * HISTOGRAM_BUCKETS)));
+		}
+	}
+	
+	public void recordFailure() {
+		failures.increment();
+	}
+	
+	/**
+	 * The number of results recorded, not counting failures.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public long getFailures() {
+		return failures.sum();
+	}
+	
+	/**
+	 * @return the number of results per label, sorted by label. Results without a label are counted under "null"
+	 */
+	public Map<String, Long> getLabelCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		labels.forEach((label, stats) -> counts.put(label, stats.count.sum()));
+		return counts;
+	}
+	
+	/**
+	 * @return the share of results with the label, or 0 if nothing has been recorded
+	 */
+	public double getLabelShare(String label) {
+		long total = getCount();
+		LabelStats stats = labels.get(label);
+		return total == 0 || stats == null ? 0 : (double) stats.count.sum() / total;
+	}
+	
+	/**
+	 * @return the mean confidence of all results that had one, or NaN if none did
+	 */
+	public double getMeanConfidence() {
+		long n = confidenceCount.sum();
+		return n == 0 ? Double.NaN : confidenceSum.sum() / n;
+	}
+	
+	/**
+	 * @return the mean confidence of the results with the label that had one, or NaN if none did
+	 */
+	public double getMeanConfidence(String label) {
+		LabelStats stats = labels.get(label);
+		long n = stats == null ? 0 : stats.confidenceCount.sum();
+		return n == 0 ? Double.NaN : stats.confidenceSum.sum() / n;
+	}
+	
+	/**
+	 * @return the number of results per confidence bucket, bucket i counting confidences from i/10 up to (i+1)/10
+	 */
+	public long[] getConfidenceHistogram() {
+		long[] counts = new long[HISTOGRAM_BUCKETS];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = histogram.get(i);
+		}
+		return counts;
+	}
+	
+	@Override
+	public String toString() {
+		return "ClassificationStats(count=" + getCount() + ", failures=" + getFailures() + ", labels=" + getLabelCounts()
+				+ ", meanConfidence=" + getMeanConfidence() + ")";
+	}
+	
+	private static final class LabelStats {
+		
+		private final LongAdder count = new LongAdder();
+		
+		private final LongAdder confidenceCount = new LongAdder();
+		
+		private final DoubleAdder confidenceSum = new DoubleAdder();
+		
+	}
+	
+}
@@ -0,0 +1,236 @@
+package com.theokanning.openai.completion;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads {@link LogProbResult}s as {@link CompactLogProbResult}s, streaming the token arrays straight into primitive arrays
+ * without building lists of boxed values or a map per token.
+ * <p>
+ * Enable it with {@link com.theokanning.openai.OpenAiServiceBuilder#compactLogprobs(boolean)},
+ * or register {@link #module()} on your own object mapper.
+ */
+public class CompactLogProbDeserializer extends StdDeserializer<LogProbResult> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	public CompactLogProbDeserializer() {
+		super(LogProbResult.class);
+	}
+	
+	/**
+	 * A Jackson module registering this deserializer for {@link LogProbResult}.
+	 */
+	public static Module module() {
+		return new SimpleModule("CompactLogProbs").addDeserializer(LogProbResult.class, new CompactLogProbDeserializer());
+	}
+	
+	@Override
+	public LogProbResult deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+		if (p.currentToken() != JsonToken.START_OBJECT) {
+			return (LogProbResult) ctxt.handleUnexpectedToken(LogProbResult.class, p);
+		}
+		String[] tokens = null;
+		double[] logprobs = null;
+		int[] textOffsets = null;
+		TopLogprobs top = null;
+		
+		String field;
+		while ((field = p.nextFieldName()) != null) {
+			JsonToken value = p.nextToken();
+			if (value == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			switch (field) {
+				case "tokens":
+					tokens = readStrings(p, ctxt);
+					break;
+				case "token_logprobs":
+					logprobs = readDoubles(p, ctxt);
+					break;
+				case "text_offset":
+					textOffsets = readInts(p, ctxt);
+					break;
+				case "top_logprobs":
+					top = readTop(p, ctxt);
+					break;
+				default:
+					p.skipChildren();
+			}
+		}
+		return top == null
+				? new CompactLogProbResult(tokens, logprobs, textOffsets, null, null, null)
+				: new CompactLogProbResult(tokens, logprobs, textOffsets, top.starts, top.tokens, top.values);
+	}
+	
+	private static String[] readStrings(JsonParser p, DeserializationContext ctxt) throws IOException {
+		expectArray(p, ctxt);
+		String[] values = new String[INITIAL_CAPACITY];
+		int size = 0;
+		while (p.nextToken() != JsonToken.END_ARRAY) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = p.getValueAsString();
+		}
+		return Arrays.copyOf(values, size);
+	}
+	
+	/**
+	 * Null entries, like the log probability of the first echoed token, are read as NaN.
+	 */
+	private static double[] readDoubles(JsonParser p, DeserializationContext ctxt) throws IOException {
+		expectArray(p, ctxt);
+		double[] values = new double[INITIAL_CAPACITY];
+		int size = 0;
+		JsonToken token;
+		while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = token == JsonToken.VALUE_NULL ? Double.NaN : readDouble(p);
+		}
+		return Arrays.copyOf(values, size);
+	}
+	
+	private static int[] readInts(JsonParser p, DeserializationContext ctxt) throws IOException {
+		expectArray(p, ctxt);
+		int[] values = new int[INITIAL_CAPACITY];
+		int size = 0;
+		while (p.nextToken() != JsonToken.END_ARRAY) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = p.getIntValue();
+		}
+		return Arrays.copyOf(values, size);
+	}
+	
+	/**
+	 * Flattens the list of {token: logprob} objects, a null entry is read as a position without alternatives.
+	 */
+	private static TopLogprobs readTop(JsonParser p, DeserializationContext ctxt) throws IOException {
+		expectArray(p, ctxt);
+		TopLogprobs top = new TopLogprobs();
+		int positions = 0;
+		JsonToken token;
+		while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+			if (positions + 1 == top.starts.length) {
+				top.starts = Arrays.copyOf(top.starts, top.starts.length * 2);
+			}
+			if (token == JsonToken.START_OBJECT) {
+				String alternative;
+				while ((alternative = p.nextFieldName()) != null) {
+					p.nextToken();
+					top.add(alternative, readDouble(p));
+				}
+			} else if (token != JsonToken.VALUE_NULL) {
+				ctxt.handleUnexpectedToken(LogProbResult.class, p);
+			}
+			top.starts[++positions] = top.size;
+		}
+		top.starts = Arrays.copyOf(top.starts, positions + 1);
+		top.tokens = Arrays.copyOf(top.tokens, top.size);
+		top.values = Arrays.copyOf(top.values, top.size);
+		return top;
+	}
+	
+	/**
+	 * Parses short decimals like {@code -0.31477404} or {@code -1.1920929e-07} from the parser's buffer without allocating.
+	 * A mantissa below 2^53 divided or multiplied by a power of ten up to 10^22 is exact before the single rounding,
+	 * so this gives the same result as {@link Double#parseDouble}. Anything longer falls back to Jackson.
+	 */
+	private static double readDouble(JsonParser p) throws IOException {
+		if (p.currentToken() != JsonToken.VALUE_NUMBER_FLOAT) {
+			return p.getDoubleValue();
+		}
+		char[] chars = p.getTextCharacters();
+		int i = p.getTextOffset();
+		int end = i + p.getTextLength();
+		boolean negative = chars[i] == '-';
+		if (negative) {
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean fraction = false;
+		for (; i < end; i++) {
+			char c = chars[i];
+			if (c >= '0' && c <= '9') {
+				if (mantissa > 0 || c != '0') {
+					digits++;
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				if (fraction) {
+					scale--;
+				}
+			} else if (c == '.') {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		if (i < end) {
+			int exponent = 0;
+			boolean negativeExponent = false;
+			for (i++; i < end; i++) {
+				char c = chars[i];
+				if (c == '-') {
+					negativeExponent = true;
+				} else if (c >= '0' && c <= '9' && exponent < 1000) {
+					exponent = exponent * 10 + (c - '0');
+				}
+			}
+			scale += negativeExponent ? -exponent : exponent;
+		}
+		if (digits > 15 || scale < -22 || scale > 22) {
+			return p.getDoubleValue();
+		}
+		double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+	
+	private static void expectArray(JsonParser p, DeserializationContext ctxt) throws IOException {
+		if (p.currentToken() != JsonToken.START_ARRAY) {
+			ctxt.handleUnexpectedToken(LogProbResult.class, p);
+		}
+	}
+	
+	private static class TopLogprobs {
+		
+		int[] starts = new int[INITIAL_CAPACITY + 1];
+		
+		String[] tokens = new String[INITIAL_CAPACITY * 5];
+		
+		double[] values = new double[INITIAL_CAPACITY * 5];
+		
+		int size;
+		
+		void add(String token, double value) {
+			if (size == tokens.length) {
+				tokens = Arrays.copyOf(tokens, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			tokens[size] = token;
+			values[size] = value;
+			size++;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,248 @@
+package com.theokanning.openai.completion;
+
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.tokenizer.TokenLimitExceededException;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combines concurrent single-prompt completions into multi-prompt requests.
+ * <p>
+ * Requests for the same engine whose parameters are equal apart from the prompt are collected for up to
+ * {@code window}, or until {@code maxBatchSize} prompts are waiting, and then sent as one request.
+ * The returned choices are routed back to each caller by {@link CompletionChoice#getIndex()},
+ * so every caller receives a result as if it had made the request on its own.
+ * <p>
+ * Requests with zero or several prompts, or with streaming enabled, are sent straight away.
+ * With {@code checkTokenLimits} enabled each prompt is checked before it joins a batch, so a prompt that is too long only
+ * fails its own request. Other errors fail every request in the batch. A cancelled request is left out of its batch if it
+ * hasn't been sent yet.
+ */
+public class CompletionBatcher implements Closeable {
+	
+	private final OpenAiService service;
+	
+	private final long windowNanos;
+	
+	private final int maxBatchSize;
+	
+	private final ScheduledExecutorService scheduler;
+	
+	private final Map<BatchKey, Batch> pending = new HashMap<>();
+	
+	private boolean closed;
+	
+	/**
+	 * @param service      the service used to send the batched requests
+	 * @param window       how long the first request of a batch waits for others to join it
+	 * @param maxBatchSize the most prompts sent in a single request
+	 */
+	public CompletionBatcher(OpenAiService service, Duration window, int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be at least 1");
+		}
+		this.service = service;
+		this.windowNanos = window.toNanos();
+		this.maxBatchSize = maxBatchSize;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "openai-completion-batcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Queues the request to be sent together with other requests like it.
+	 *
+	 * @return the result for this request's prompt only, failed with an {@link IllegalStateException} if the batcher is closed
+	 */
+	public CompletableFuture<CompletionResult> submit(String engineId, CompletionRequest request) {
+		if (request.getPrompt() == null || request.getPrompt().size() != 1 || Boolean.TRUE.equals(request.getStream())) {
+			return service.createCompletionAsync(engineId, request);
+		}
+		CompletableFuture<CompletionResult> future = new CompletableFuture<>();
+		try {
+			service.checkCompletion(engineId, request);
+		} catch (TokenLimitExceededException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+		BatchKey key = new BatchKey(engineId, request.toBuilder().clearPrompt().build());
+		Batch full = null;
+		synchronized (pending) {
+			if (closed) {
+				future.completeExceptionally(new IllegalStateException("The batcher is closed"));
+				return future;
+			}
+			Batch batch = pending.get(key);
+			if (batch == null) {
+				batch = new Batch(key);
+				pending.put(key, batch);
+				Batch scheduled = batch;
+				scheduler.schedule(() -> flush(scheduled), windowNanos, TimeUnit.NANOSECONDS);
+			}
+			batch.add(request.getPrompt().get(0), future);
+			if (batch.size() >= maxBatchSize) {
+				pending.remove(key);
+				full = batch;
+			}
+		}
+		if (full != null) {
+			send(full);
+		}
+		return future;
+	}
+	
+	/**
+	 * Sends all waiting batches immediately.
+	 */
+	public void flush() {
+		List<Batch> batches;
+		synchronized (pending) {
+			batches = new ArrayList<>(pending.values());
+			pending.clear();
+		}
+		batches.forEach(this::send);
+	}
+	
+	/**
+	 * Sends the waiting batches and stops the batching timer. Requests submitted afterwards fail.
+	 */
+	@Override
+	public void close() {
+		synchronized (pending) {
+			closed = true;
+		}
+		flush();
+		scheduler.shutdown();
+	}
+	
+	private void flush(Batch batch) {
+		synchronized (pending) {
+			if (pending.get(batch.key) != batch) {
+				return;
+			}
+			pending.remove(batch.key);
+		}
+		send(batch);
+	}
+	
+	private void send(Batch waiting) {
+		Batch batch = waiting.withoutCancelled();
+		if (batch.size() == 0) {
+			return;
+		}
+		CompletionRequest request = batch.key.template.toBuilder().prompt(batch.prompts).build();
+		service.createCompletionRx(batch.key.engineId, request).subscribe(
+				result -> route(batch, result),
+				error -> batch.futures.forEach(future -> future.completeExceptionally(error))
+		);
+	}
+	
+	/**
+	 * The api returns {@code n} choices per prompt, with prompt {@code i}'s choices at indexes {@code i * n} to {@code i * n + n - 1}.
+	 * A prompt without any choices in the response fails its request.
+	 */
+	private static void route(Batch batch, CompletionResult result) {
+		Integer n = batch.key.template.getN();
+		int choicesPerPrompt = n != null ? n : 1;
+		List<List<CompletionChoice>> choices = new ArrayList<>(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			choices.add(new ArrayList<>(choicesPerPrompt));
+		}
+		for (CompletionChoice choice : result.getChoices()) {
+			int prompt = choice.getIndex() / choicesPerPrompt;
+			if (prompt < batch.size()) {
+				choice.setIndex(choice.getIndex() % choicesPerPrompt);
+				choices.get(prompt).add(choice);
+			}
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			if (choices.get(i).isEmpty()) {
+				batch.futures.get(i).completeExceptionally(new IllegalStateException("The response has no choices for prompt " + i + " of the batch"));
+				continue;
+			}
+			CompletionResult single = new CompletionResult();
+			single.setId(result.getId());
+			single.setObject(result.getObject());
+			single.setCreated(result.getCreated());
+			single.setModel(result.getModel());
+			single.setChoices(choices.get(i));
+			batch.futures.get(i).complete(single);
+		}
+	}
+	
+	private static final class BatchKey {
+		
+		final String engineId;
+		
+		final CompletionRequest template;
+		
+		BatchKey(String engineId, CompletionRequest template) {
+			this.engineId = engineId;
+			this.template = template;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof BatchKey)) {
+				return false;
+			}
+			BatchKey other = (BatchKey) o;
+			return engineId.equals(other.engineId) && template.equals(other.template);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(engineId, template);
+		}
+		
+	}
+	
+	private static final class Batch {
+		
+		final BatchKey key;
+		
+		final List<String> prompts = new ArrayList<>();
+		
+		final List<CompletableFuture<CompletionResult>> futures = new ArrayList<>();
+		
+		Batch(BatchKey key) {
+			this.key = key;
+		}
+		
+		void add(String prompt, CompletableFuture<CompletionResult> future) {
+			prompts.add(prompt);
+			futures.add(future);
+		}
+		
+		int size() {
+			return prompts.size();
+		}
+		
+		Batch withoutCancelled() {
+			Batch batch = new Batch(key);
+			for (int i = 0; i < size(); i++) {
+				if (!futures.get(i).isCancelled()) {
+					batch.add(prompts.get(i), futures.get(i));
+				}
+			}
+			return batch;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,16 @@
+package com.theokanning.openai.files;
+
+import java.io.IOException;
+
+/**
+ * Writes the records of a dataset that is streamed straight into an upload,
+ * see {@link com.theokanning.openai.FileService#uploadDataset(String, Purpose, DatasetProducer)}.
+ * <p>
+ * Called once, on the OkHttp thread sending the request, while the upload is in progress.
+ * Records are sent as they are written, so the producer can read them from a database or another file without buffering.
+ */
+public interface DatasetProducer<T extends DatasetRecord> {
+	
+	void writeTo(DatasetWriter<T> writer) throws IOException;
+	
+}
@@ -0,0 +1,103 @@
+package com.theokanning.openai.files;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.theokanning.openai.OpenAiService;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes {@link DatasetRecord}s as JSONL, one line per record, in constant memory.
+ * <p>
+ * A single Jackson generator is reused for all records, and each record is validated before it is written,
+ * so an invalid record fails the write without leaving a partial line behind.
+ * Write to a temporary file with {@link #toTempFile()} and upload it with
+ * {@link com.theokanning.openai.FileService#uploadFile(Path, Purpose, com.theokanning.openai.UploadProgressListener)},
+ * or stream the records straight into the upload with
+ * {@link com.theokanning.openai.FileService#uploadDataset(String, Purpose, DatasetProducer)}.
+ *
+ * @param <T> the record type, e.g. {@link DocumentRecord} for search and answers files
+ */
+public class DatasetWriter<T extends DatasetRecord> implements Closeable {
+	
+	private static final ObjectWriter WRITER = OpenAiService.defaultObjectMapper()
+			.writer()
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	
+	private final JsonGenerator generator;
+	
+	private final Path path;
+	
+	private long recordCount;
+	
+	/**
+	 * Writes to the given stream, which is closed with this writer.
+	 */
+	public DatasetWriter(OutputStream out) throws IOException {
+		this(out, null);
+	}
+	
+	private DatasetWriter(OutputStream out, Path path) throws IOException {
+		this.generator = WRITER.getFactory().createGenerator(out);
+		this.generator.setRootValueSeparator(null);
+		this.path = path;
+	}
+	
+	/**
+	 * Writes to a new temporary file, see {@link #getPath()}. The caller is responsible for deleting it.
+	 */
+	public static <T extends DatasetRecord> DatasetWriter<T> toTempFile() throws IOException {
+		Path path = Files.createTempFile("openai-dataset-", ".jsonl");
+		return new DatasetWriter<>(new BufferedOutputStream(Files.newOutputStream(path)), path);
+	}
+	
+	/**
+	 * @throws IllegalArgumentException if the record is invalid, nothing is written in that case
+	 */
+	public void write(T record) throws IOException {
+		try {
+			record.validate();
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Record " + recordCount + " is invalid: " + e.getMessage(), e);
+		}
+		WRITER.writeValue(generator, record);
+		generator.writeRaw('\n');
+		recordCount++;
+	}
+	
+	public void writeAll(Iterable<? extends T> records) throws IOException {
+		for (T record : records) {
+			write(record);
+		}
+	}
+	
+	/**
+	 * The number of records written so far.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+	
+	/**
+	 * @return the file written to, or null if this writer wasn't created with {@link #toTempFile()}
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	public void flush() throws IOException {
+		generator.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		generator.close();
+	}
+	
+}
@@ -0,0 +1,40 @@
+package com.theokanning.openai.finetunes;
+
+/**
+ * Callback for a fine-tune job followed by a {@link FineTuneWatcher}.
+ * <p>
+ * Callbacks for all jobs of a watcher are invoked one at a time on its scheduler thread, so they should return quickly.
+ */
+public interface FineTuneListener {
+	
+	/**
+	 * Called when the status of the job changes, and once with the current status when the listener is added.
+	 *
+	 * @param job            the job as it was when the change was seen
+	 * @param previousStatus the status before the change, or null for the first call
+	 */
+	default void onStatusChange(FineTuneResult job, String previousStatus) {
+	}
+	
+	/**
+	 * Called for each event logged by the job, in order. Events logged before the listener was added are only
+	 * delivered if the job wasn't being watched yet.
+	 */
+	default void onEvent(String fineTuneId, FineTuneEvent event) {
+	}
+	
+	/**
+	 * Called once the job has succeeded, failed or been cancelled, after its last status change and event.
+	 * No further callbacks are made afterwards.
+	 */
+	default void onFinished(FineTuneResult job) {
+	}
+	
+	/**
+	 * Called if the job can't be watched, e.g. because it doesn't exist. No further callbacks are made afterwards.
+	 * Network errors and server errors don't end the watch, the job is polled again later.
+	 */
+	default void onError(String fineTuneId, Throwable error) {
+	}
+	
+}
@@ -0,0 +1,357 @@
+package com.theokanning.openai.finetunes;
+
+import com.theokanning.openai.OpenAiService;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import retrofit2.HttpException;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Follows fine-tune jobs and reports their status changes and events to {@link FineTuneListener}s.
+ * <p>
+ * Each job is followed with the event stream of {@link OpenAiService#streamFineTuneEvents(String)}, and its status is
+ * fetched whenever a new event arrives. If the stream can't be opened, or ends before the job has finished,
+ * the job is polled instead: every {@code pollInterval} while it is running, and with a delay that doubles up to
+ * {@code maxPollInterval} while it is still pending in the queue. The stream is opened again when polling sees the status change.
+ * Idle streams are closed by the client's read timeout, so a longer read timeout keeps more jobs on the stream.
+ * <p>
+ * All jobs share a single scheduler thread, and a job watched by several listeners is only followed once.
+ */
+public class FineTuneWatcher implements Closeable {
+	
+	private static final Set<String> FINISHED_STATUSES = new HashSet<>(Arrays.asList("succeeded", "failed", "cancelled"));
+	
+	private static final String PENDING_STATUS = "pending";
+	
+	private final OpenAiService service;
+	
+	private final boolean streamEvents;
+	
+	private final long pollIntervalMillis;
+	
+	private final long maxPollIntervalMillis;
+	
+	private final ScheduledExecutorService executor;
+	
+	private final Scheduler scheduler;
+	
+	private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+	
+	/**
+	 * Follows jobs with the event stream, polling every 15 seconds, or up to every 5 minutes while pending, when it isn't available.
+	 */
+	public FineTuneWatcher(OpenAiService service) {
+		this(service, true, Duration.ofSeconds(15), Duration.ofMinutes(5));
+	}
+	
+	/**
+	 * @param service         the service used to stream and fetch the jobs
+	 * @param streamEvents    whether to follow jobs with the event stream, if false they are only polled
+	 * @param pollInterval    the delay between polls of a running job, and after a status change
+	 * @param maxPollInterval the longest delay between polls of a pending job
+	 */
+	public FineTuneWatcher(OpenAiService service, boolean streamEvents, Duration pollInterval, Duration maxPollInterval) {
+		if (pollInterval.isNegative() || pollInterval.isZero() || maxPollInterval.compareTo(pollInterval) < 0) {
+			throw new IllegalArgumentException("pollInterval must be positive and at most maxPollInterval");
+		}
+		this.service = service;
+		this.streamEvents = streamEvents;
+		this.pollIntervalMillis = pollInterval.toMillis();
+		this.maxPollIntervalMillis = maxPollInterval.toMillis();
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "openai-fine-tune-watcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler = Schedulers.from(executor);
+	}
+	
+	/**
+	 * Starts following the job, or adds the listener to it if it is already being followed.
+	 *
+	 * @return a handle that removes the listener when disposed, the job stops being followed once it has no listeners
+	 */
+	public Disposable watch(String fineTuneId, FineTuneListener listener) {
+		Subscription subscription = new Subscription(fineTuneId, listener);
+		run(() -> {
+			if (!subscription.isDisposed()) {
+				watches.computeIfAbsent(fineTuneId, Watch::new).add(subscription);
+			}
+		});
+		return subscription;
+	}
+	
+	/**
+	 * The number of jobs being followed.
+	 */
+	public int getWatchedCount() {
+		return watches.size();
+	}
+	
+	/**
+	 * Stops following all jobs, without calling their listeners.
+	 */
+	@Override
+	public void close() {
+		run(() -> {
+			for (Watch watch : new ArrayList<>(watches.values())) {
+				watch.stop();
+			}
+		});
+		executor.shutdown();
+	}
+	
+	private void run(Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			// the watcher has been closed
+		}
+	}
+	
+	private static boolean isFatal(Throwable error) {
+		if (error instanceof HttpException) {
+			int code = ((HttpException) error).code();
+			return code >= 400 && code < 500 && code != 408 && code != 429;
+		}
+		return false;
+	}
+	
+	private final class Subscription implements Disposable {
+		
+		private final String fineTuneId;
+		
+		private final FineTuneListener listener;
+		
+		private final AtomicBoolean disposed = new AtomicBoolean();
+		
+		private Subscription(String fineTuneId, FineTuneListener listener) {
+			this.fineTuneId = fineTuneId;
+			this.listener = listener;
+		}
+		
+		@Override
+		public void dispose() {
+			if (disposed.compareAndSet(false, true)) {
+				run(() -> {
+					Watch watch = watches.get(fineTuneId);
+					if (watch != null) {
+						watch.remove(this);
+					}
+				});
+			}
+		}
+		
+		@Override
+		public boolean isDisposed() {
+			return disposed.get();
+		}
+		
+	}
+	
+	/**
+	 * The state of one followed job. Only accessed on the scheduler thread.
+	 */
+	private final class Watch {
+		
+		private final String fineTuneId;
+		
+		private final List<Subscription> subscriptions = new ArrayList<>();
+		
+		private FineTuneResult job;
+		
+		private int eventCount;
+		
+		private long pollDelayMillis = pollIntervalMillis;
+		
+		private boolean streaming;
+		
+		private boolean streamUnavailable;
+		
+		private int streamPosition;
+		
+		private boolean fetching;
+		
+		private boolean fetchAgain;
+		
+		private boolean stopped;
+		
+		private Disposable stream = Disposables.disposed();
+		
+		private Disposable poll = Disposables.disposed();
+		
+		private Watch(String fineTuneId) {
+			this.fineTuneId = fineTuneId;
+		}
+		
+		void add(Subscription subscription) {
+			subscriptions.add(subscription);
+			if (subscriptions.size() == 1) {
+				if (streamEvents) {
+					openStream();
+				}
+				fetch();
+			} else if (job != null) {
+				publishTo(subscription, listener -> listener.onStatusChange(job, null));
+			}
+		}
+		
+		void remove(Subscription subscription) {
+			subscriptions.remove(subscription);
+			if (subscriptions.isEmpty()) {
+				stop();
+			}
+		}
+		
+		void stop() {
+			stopped = true;
+			stream.dispose();
+			poll.dispose();
+			watches.remove(fineTuneId, this);
+		}
+		
+		private void openStream() {
+			streaming = true;
+			streamPosition = 0;
+			stream = service.streamFineTuneEvents(fineTuneId)
+					.observeOn(scheduler)
+					.subscribe(this::onStreamEvent, this::onStreamEnd, () -> onStreamEnd(null));
+		}
+		
+		/**
+		 * The stream starts with the events logged so far, the ones that have already been delivered are skipped.
+		 */
+		private void onStreamEvent(FineTuneEvent event) {
+			if (stopped || streamPosition++ < eventCount) {
+				return;
+			}
+			eventCount++;
+			publish(listener -> listener.onEvent(fineTuneId, event));
+			fetch();
+		}
+		
+		private void onStreamEnd(Throwable error) {
+			streaming = false;
+			if (error instanceof HttpException) {
+				streamUnavailable = true;
+			}
+			if (!stopped) {
+				fetch();
+			}
+		}
+		
+		private void fetch() {
+			if (fetching) {
+				fetchAgain = true;
+				return;
+			}
+			poll.dispose();
+			fetching = true;
+			poll = service.getFineTuneRx(fineTuneId)
+					.observeOn(scheduler)
+					.subscribe(this::onJob, this::onFetchFailed);
+		}
+		
+		private void onJob(FineTuneResult result) {
+			fetching = false;
+			if (stopped) {
+				return;
+			}
+			String previousStatus = job == null ? null : job.getStatus();
+			boolean changed = job == null || !result.getStatus().equals(previousStatus);
+			boolean finished = FINISHED_STATUSES.contains(result.getStatus());
+			job = result;
+			if (!streaming || finished) {
+				deliverEvents(result.getEvents());
+			}
+			if (changed) {
+				publish(listener -> listener.onStatusChange(result, previousStatus));
+			}
+			if (finished) {
+				publish(listener -> listener.onFinished(result));
+				stop();
+				return;
+			}
+			if (changed) {
+				pollDelayMillis = pollIntervalMillis;
+				if (previousStatus != null && streamEvents && !streaming && !streamUnavailable) {
+					openStream();
+				}
+			} else if (PENDING_STATUS.equals(result.getStatus())) {
+				pollDelayMillis = Math.min(maxPollIntervalMillis, pollDelayMillis * 2);
+			}
+			next();
+		}
+		
+		private void onFetchFailed(Throwable error) {
+			fetching = false;
+			if (stopped) {
+				return;
+			}
+			if (isFatal(error)) {
+				publish(listener -> listener.onError(fineTuneId, error));
+				stop();
+				return;
+			}
+			pollDelayMillis = Math.min(maxPollIntervalMillis, pollDelayMillis * 2);
+			next();
+		}
+		
+		private void next() {
+			if (fetchAgain) {
+				fetchAgain = false;
+				fetch();
+			} else if (!streaming) {
+				poll = Single.timer(pollDelayMillis, TimeUnit.MILLISECONDS, scheduler).subscribe(tick -> fetch());
+			}
+		}
+		
+		private void deliverEvents(List<FineTuneEvent> events) {
+			if (events == null) {
+				return;
+			}
+			while (eventCount < events.size()) {
+				FineTuneEvent event = events.get(eventCount++);
+				publish(listener -> listener.onEvent(fineTuneId, event));
+			}
+		}
+		
+		private void publish(Consumer<FineTuneListener> callback) {
+			for (Subscription subscription : new ArrayList<>(subscriptions)) {
+				publishTo(subscription, callback);
+			}
+		}
+		
+		private void publishTo(Subscription subscription, Consumer<FineTuneListener> callback) {
+			if (subscription.isDisposed()) {
+				return;
+			}
+			try {
+				callback.accept(subscription.listener);
+			} catch (Throwable t) {
+				RxJavaPlugins.onError(t);
+			}
+		}
+		
+	}
+	
+}
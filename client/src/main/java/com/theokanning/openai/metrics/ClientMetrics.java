@@ -0,0 +1,98 @@
+package com.theokanning.openai.metrics;
+
+import com.theokanning.openai.Endpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps latency histograms, status codes, retries, hedges, byte counts and the last rate limit headers
+ * per {@link Endpoint} in memory.
+ * <p>
+ * All counters are lock-free, so recording doesn't contend between concurrent calls.
+ * Read the values from {@link #get(Endpoint)} and {@link #getTransport()}, e.g. to export them periodically.
+ */
+public class ClientMetrics implements MetricsRecorder {
+	
+	private final EndpointMetrics[] endpoints;
+	
+	private volatile TransportGauges transport;
+	
+	public ClientMetrics() {
+		Endpoint[] values = Endpoint.values();
+		endpoints = new EndpointMetrics[values.length];
+		for (Endpoint endpoint : values) {
+			endpoints[endpoint.ordinal()] = new EndpointMetrics(endpoint);
+		}
+	}
+	
+	public EndpointMetrics get(Endpoint endpoint) {
+		return endpoints[endpoint.ordinal()];
+	}
+	
+	/**
+	 * @return the endpoints that have been called at least once
+	 */
+	public List<EndpointMetrics> getCalledEndpoints() {
+		List<EndpointMetrics> called = new ArrayList<>();
+		for (EndpointMetrics metrics : endpoints) {
+			if (metrics.getCount() > 0 || metrics.getInFlight() > 0) {
+				called.add(metrics);
+			}
+		}
+		return called;
+	}
+	
+	/**
+	 * @return the connection pool and dispatcher gauges of the service, or null if this isn't bound to one yet
+	 */
+	public TransportGauges getTransport() {
+		return transport;
+	}
+	
+	@Override
+	public void callStarted(Endpoint endpoint) {
+		get(endpoint).started();
+	}
+	
+	@Override
+	public void callDispatched(Endpoint endpoint, long queueWaitNanos) {
+		get(endpoint).dispatched(queueWaitNanos);
+	}
+	
+	@Override
+	public void callEnded(Endpoint endpoint, int statusCode, long latencyNanos, long requestBytes, long responseBytes) {
+		get(endpoint).ended(statusCode, latencyNanos, requestBytes, responseBytes);
+	}
+	
+	@Override
+	public void retried(Endpoint endpoint, Throwable error) {
+		get(endpoint).retried();
+	}
+	
+	@Override
+	public void hedged(Endpoint endpoint) {
+		get(endpoint).hedged();
+	}
+	
+	@Override
+	public void rateLimitObserved(Endpoint endpoint, RateLimitHeaders headers) {
+		get(endpoint).rateLimitObserved(headers);
+	}
+	
+	@Override
+	public void limitChanged(Endpoint endpoint, int limit) {
+		get(endpoint).limitChanged(limit);
+	}
+	
+	@Override
+	public void bindTransport(TransportGauges gauges) {
+		this.transport = gauges;
+	}
+	
+	@Override
+	public String toString() {
+		return "ClientMetrics(endpoints=" + getCalledEndpoints() + ", transport=" + transport + ")";
+	}
+	
+}
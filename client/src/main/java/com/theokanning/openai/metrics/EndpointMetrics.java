@@ -0,0 +1,196 @@
+package com.theokanning.openai.metrics;
+
+import com.theokanning.openai.Endpoint;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurements of a single {@link Endpoint} kept by {@link ClientMetrics}.
+ * The getters read the live counters, so values may move between two calls.
+ */
+public class EndpointMetrics {
+	
+	private static final int MAX_STATUS_CODE = 600;
+	
+	private final Endpoint endpoint;
+	
+	private final LatencyHistogram latency = new LatencyHistogram();
+	
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	
+	private final LongAdder inFlight = new LongAdder();
+	
+	private final LongAdder failures = new LongAdder();
+	
+	private final LongAdder retries = new LongAdder();
+	
+	private final LongAdder hedges = new LongAdder();
+	
+	private final LongAdder requestBytes = new LongAdder();
+	
+	private final LongAdder responseBytes = new LongAdder();
+	
+	private final LatencyHistogram processingTime = new LatencyHistogram();
+	
+	private volatile RateLimitHeaders rateLimit;
+	
+	private volatile int concurrencyLimit = -1;
+	
+	/**
+	 * Indexed by status code. Failed calls, and out of range codes, are counted in {@link #failures} instead.
+	 */
+	private final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE);
+	
+	EndpointMetrics(Endpoint endpoint) {
+		this.endpoint = endpoint;
+	}
+	
+	void started() {
+		inFlight.increment();
+	}
+	
+	void dispatched(long queueWaitNanos) {
+		queueWait.record(queueWaitNanos);
+	}
+	
+	void ended(int statusCode, long latencyNanos, long requestBytes, long responseBytes) {
+		inFlight.decrement();
+		latency.record(latencyNanos);
+		if (statusCode > 0 && statusCode < MAX_STATUS_CODE) {
+			statusCodes.incrementAndGet(statusCode);
+		} else {
+			failures.increment();
+		}
+		this.requestBytes.add(requestBytes);
+		this.responseBytes.add(responseBytes);
+	}
+	
+	void retried() {
+		retries.increment();
+	}
+	
+	void hedged() {
+		hedges.increment();
+	}
+	
+	void rateLimitObserved(RateLimitHeaders headers) {
+		rateLimit = headers;
+		if (headers.getProcessingMillis() >= 0) {
+			processingTime.record(TimeUnit.MILLISECONDS.toNanos(headers.getProcessingMillis()));
+		}
+	}
+	
+	void limitChanged(int limit) {
+		concurrencyLimit = limit;
+	}
+	
+	public Endpoint getEndpoint() {
+		return endpoint;
+	}
+	
+	/**
+	 * Time from enqueueing a call until its response body has been read, or it has failed.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+	
+	/**
+	 * Time calls spent waiting for a dispatcher slot before their request started.
+	 */
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+	
+	/**
+	 * The number of finished calls, successful or not.
+	 */
+	public long getCount() {
+		return latency.getCount();
+	}
+	
+	/**
+	 * Calls that have started but not ended yet, including queued ones.
+	 */
+	public long getInFlight() {
+		return inFlight.sum();
+	}
+	
+	/**
+	 * Calls that failed before their response was fully read, e.g. because of a network error or timeout.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+	
+	public long getRetries() {
+		return retries.sum();
+	}
+	
+	/**
+	 * Duplicate calls sent because the original was slow, see {@link com.theokanning.openai.HedgePolicy}.
+	 */
+	public long getHedges() {
+		return hedges.sum();
+	}
+	
+	/**
+	 * The time the api reported spending on each call, from the {@code openai-processing-ms} header.
+	 */
+	public LatencyHistogram getProcessingTime() {
+		return processingTime;
+	}
+	
+	/**
+	 * @return the rate limit headers of the latest response that had them, or null if none did
+	 */
+	public RateLimitHeaders getRateLimit() {
+		return rateLimit;
+	}
+	
+	/**
+	 * @return the current limit on concurrent calls set by a {@link com.theokanning.openai.AdaptiveLimiter}, or -1 if there is none
+	 */
+	public int getConcurrencyLimit() {
+		return concurrencyLimit;
+	}
+	
+	public long getRequestBytes() {
+		return requestBytes.sum();
+	}
+	
+	public long getResponseBytes() {
+		return responseBytes.sum();
+	}
+	
+	public long getStatusCount(int statusCode) {
+		return statusCode > 0 && statusCode < MAX_STATUS_CODE ? statusCodes.get(statusCode) : 0;
+	}
+	
+	/**
+	 * @return the number of responses per status code, for the codes that were received at least once
+	 */
+	public Map<Integer, Long> getStatusCounts() {
+		Map<Integer, Long> counts = new TreeMap<>();
+		for (int code = 1; code < MAX_STATUS_CODE; code++) {
+			long count = statusCodes.get(code);
+			if (count > 0) {
+				counts.put(code, count);
+			}
+		}
+		return Collections.unmodifiableMap(counts);
+	}
+	
+	@Override
+	public String toString() {
+		return "EndpointMetrics(endpoint=" + endpoint + ", count=" + getCount() + ", inFlight=" + getInFlight()
+				+ ", failures=" + getFailures() + ", retries=" + getRetries() + ", hedges=" + getHedges() + ", statusCounts=" + getStatusCounts()
+				+ ", latency=" + latency + ", queueWait=" + queueWait + ", rateLimit=" + rateLimit + ", concurrencyLimit=" + concurrencyLimit + ")";
+	}
+	
+}
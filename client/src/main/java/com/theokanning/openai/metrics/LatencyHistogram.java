@@ -0,0 +1,107 @@
+package com.theokanning.openai.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations with logarithmic buckets.
+ * <p>
+ * Durations are recorded in microseconds. Each power of two is split into 8 buckets, so a percentile is
+ * reported within 12.5% of the recorded value. Recording is a single atomic increment and never allocates.
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 3;
+	
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	/**
+	 * 2^36 microseconds is about 19 hours, longer durations are counted in the last bucket.
+	 */
+	private static final int MAX_EXPONENT = 36;
+	
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	
+	private final LongAdder count = new LongAdder();
+	
+	private final LongAdder totalMicros = new LongAdder();
+	
+	public void record(long nanos) {
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+		buckets.incrementAndGet(bucketIndex(micros));
+		count.increment();
+		totalMicros.add(micros);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public Duration getMean() {
+		long n = count.sum();
+		return n == 0 ? Duration.ZERO : Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(totalMicros.sum()) / n);
+	}
+	
+	/**
+	 * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+	 * @return the upper bound of the bucket holding the given quantile, or zero if nothing was recorded
+	 */
+	public Duration getPercentile(double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+		}
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return Duration.ZERO;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(upperBound(i)));
+			}
+		}
+		return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(upperBound(BUCKET_COUNT - 1)));
+	}
+	
+	/**
+	 * Values below 8 get a bucket each, above that the top 3 bits after the leading one select the sub bucket.
+	 */
+	static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	static long upperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+	@Override
+	public String toString() {
+		return "LatencyHistogram(count=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(0.5)
+				+ ", p99=" + getPercentile(0.99) + ")";
+	}
+	
+}
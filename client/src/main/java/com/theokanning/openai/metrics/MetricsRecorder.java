@@ -0,0 +1,77 @@
+package com.theokanning.openai.metrics;
+
+import com.theokanning.openai.Endpoint;
+
+/**
+ * Receives measurements of the calls made by an {@link com.theokanning.openai.OpenAiService}, see
+ * {@link com.theokanning.openai.OpenAiServiceBuilder#metrics(MetricsRecorder)}.
+ * <p>
+ * Implement this to forward measurements to a metrics library, or use {@link ClientMetrics} to keep them in memory.
+ * Methods are called on OkHttp and RxJava threads while a call is in progress, so they must be thread safe and return quickly.
+ * Every http attempt is recorded separately, a call that is retried twice is recorded three times.
+ */
+public interface MetricsRecorder {
+	
+	/**
+	 * Records nothing.
+	 */
+	MetricsRecorder NONE = new MetricsRecorder() {
+	};
+	
+	/**
+	 * Called when a call is enqueued or executed, before it waits for a dispatcher slot.
+	 */
+	default void callStarted(Endpoint endpoint) {
+	}
+	
+	/**
+	 * Called when a call leaves the dispatcher queue and starts its request.
+	 *
+	 * @param queueWaitNanos the time between {@link #callStarted} and the start of the request
+	 */
+	default void callDispatched(Endpoint endpoint, long queueWaitNanos) {
+	}
+	
+	/**
+	 * Called once for every call that was started, when its response body has been read or it has failed.
+	 *
+	 * @param statusCode    the http status of the response, or 0 if no response was received
+	 * @param latencyNanos  the time since {@link #callStarted}, including the queue wait
+	 * @param requestBytes  the size of the request body
+	 * @param responseBytes the size of the response body that was read
+	 */
+	default void callEnded(Endpoint endpoint, int statusCode, long latencyNanos, long requestBytes, long responseBytes) {
+	}
+	
+	/**
+	 * Called when a failed call is about to be retried by a {@link com.theokanning.openai.RetryPolicy}.
+	 */
+	default void retried(Endpoint endpoint, Throwable error) {
+	}
+	
+	/**
+	 * Called when a duplicate of a slow call is sent by a {@link com.theokanning.openai.HedgePolicy}.
+	 */
+	default void hedged(Endpoint endpoint) {
+	}
+	
+	/**
+	 * Called for every response that has rate limit or processing time headers.
+	 */
+	default void rateLimitObserved(Endpoint endpoint, RateLimitHeaders headers) {
+	}
+	
+	/**
+	 * Called when a {@link com.theokanning.openai.AdaptiveLimiter} changes the concurrency limit of the endpoint,
+	 * and once with the initial limit.
+	 */
+	default void limitChanged(Endpoint endpoint, int limit) {
+	}
+	
+	/**
+	 * Called once when the service is built, with gauges for its connection pool and dispatcher.
+	 */
+	default void bindTransport(TransportGauges gauges) {
+	}
+	
+}
@@ -0,0 +1,120 @@
+package com.theokanning.openai.metrics;
+
+import com.theokanning.openai.Endpoint;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Feeds a {@link MetricsRecorder} from OkHttp, using an {@link EventListener} for timings and sizes
+ * and an {@link Interceptor} to detect when a call leaves the dispatcher queue.
+ * <p>
+ * Only calls made through {@link com.theokanning.openai.OpenAiApi} are recorded, their endpoint is found from the
+ * {@link Invocation} Retrofit attaches to each request.
+ * {@link com.theokanning.openai.OpenAiServiceBuilder#metrics(MetricsRecorder)} installs both, replacing any event listener
+ * of a caller supplied client. They can also be added to an OkHttpClient built by hand, the interceptor should come first.
+ */
+public class OkHttpMetrics {
+	
+	private final MetricsRecorder recorder;
+	
+	/**
+	 * Calls that have started but not been dispatched yet, so that the interceptor can find the call's start time.
+	 */
+	private final Map<Call, CallListener> queued = new ConcurrentHashMap<>();
+	
+	public OkHttpMetrics(MetricsRecorder recorder) {
+		this.recorder = recorder;
+	}
+	
+	public EventListener.Factory eventListenerFactory() {
+		return call -> {
+			Endpoint endpoint = endpoint(call);
+			return endpoint != null ? new CallListener(endpoint) : EventListener.NONE;
+		};
+	}
+	
+	public Interceptor interceptor() {
+		return chain -> {
+			CallListener listener = queued.remove(chain.call());
+			if (listener != null) {
+				recorder.callDispatched(listener.endpoint, System.nanoTime() - listener.startNanos);
+			}
+			return chain.proceed(chain.request());
+		};
+	}
+	
+	private static Endpoint endpoint(Call call) {
+		Invocation invocation = call.request().tag(Invocation.class);
+		return invocation != null ? Endpoint.forMethod(invocation.method()) : null;
+	}
+	
+	/**
+	 * Collects the measurements of a single call, OkHttp creates one per call and calls it from one thread at a time.
+	 */
+	private class CallListener extends EventListener {
+		
+		final Endpoint endpoint;
+		
+		long startNanos;
+		
+		int statusCode;
+		
+		long requestBytes;
+		
+		long responseBytes;
+		
+		CallListener(Endpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+		
+		@Override
+		public void callStart(Call call) {
+			startNanos = System.nanoTime();
+			recorder.callStarted(endpoint);
+			queued.put(call, this);
+		}
+		
+		@Override
+		public void requestBodyEnd(Call call, long byteCount) {
+			requestBytes += byteCount;
+		}
+		
+		@Override
+		public void responseHeadersEnd(Call call, Response response) {
+			statusCode = response.code();
+			RateLimitHeaders rateLimit = RateLimitHeaders.parse(response.headers());
+			if (rateLimit != null) {
+				recorder.rateLimitObserved(endpoint, rateLimit);
+			}
+		}
+		
+		@Override
+		public void responseBodyEnd(Call call, long byteCount) {
+			responseBytes += byteCount;
+		}
+		
+		@Override
+		public void callEnd(Call call) {
+			ended(call, statusCode);
+		}
+		
+		@Override
+		public void callFailed(Call call, IOException ioe) {
+			ended(call, 0);
+		}
+		
+		private void ended(Call call, int status) {
+			queued.remove(call);
+			recorder.callEnded(endpoint, status, System.nanoTime() - startNanos, requestBytes, responseBytes);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,144 @@
+package com.theokanning.openai.metrics;
+
+import okhttp3.Headers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The rate limit and processing time headers of an api response. Values missing from the response are -1.
+ */
+public final class RateLimitHeaders {
+	
+	private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+	
+	private final long limitRequests;
+	
+	private final long remainingRequests;
+	
+	private final long resetRequestsNanos;
+	
+	private final long limitTokens;
+	
+	private final long remainingTokens;
+	
+	private final long resetTokensNanos;
+	
+	private final long processingMillis;
+	
+	private RateLimitHeaders(Headers headers) {
+		limitRequests = parseLong(headers.get("x-ratelimit-limit-requests"));
+		remainingRequests = parseLong(headers.get("x-ratelimit-remaining-requests"));
+		resetRequestsNanos = parseDuration(headers.get("x-ratelimit-reset-requests"));
+		limitTokens = parseLong(headers.get("x-ratelimit-limit-tokens"));
+		remainingTokens = parseLong(headers.get("x-ratelimit-remaining-tokens"));
+		resetTokensNanos = parseDuration(headers.get("x-ratelimit-reset-tokens"));
+		processingMillis = parseLong(headers.get("openai-processing-ms"));
+	}
+	
+	/**
+	 * @return the headers of the response, or null if it has none of them
+	 */
+	public static RateLimitHeaders parse(Headers headers) {
+		RateLimitHeaders parsed = new RateLimitHeaders(headers);
+		boolean empty = parsed.limitRequests < 0 && parsed.remainingRequests < 0 && parsed.resetRequestsNanos < 0
+				&& parsed.limitTokens < 0 && parsed.remainingTokens < 0 && parsed.resetTokensNanos < 0 && parsed.processingMillis < 0;
+		return empty ? null : parsed;
+	}
+	
+	public long getLimitRequests() {
+		return limitRequests;
+	}
+	
+	public long getRemainingRequests() {
+		return remainingRequests;
+	}
+	
+	/**
+	 * The time until the request quota is fully restored, in nanoseconds.
+	 */
+	public long getResetRequestsNanos() {
+		return resetRequestsNanos;
+	}
+	
+	public long getLimitTokens() {
+		return limitTokens;
+	}
+	
+	public long getRemainingTokens() {
+		return remainingTokens;
+	}
+	
+	/**
+	 * The time until the token quota is fully restored, in nanoseconds.
+	 */
+	public long getResetTokensNanos() {
+		return resetTokensNanos;
+	}
+	
+	/**
+	 * The time the api spent on the request, from {@code openai-processing-ms}.
+	 */
+	public long getProcessingMillis() {
+		return processingMillis;
+	}
+	
+	/**
+	 * Whether the request or token quota is used up.
+	 */
+	public boolean isExhausted() {
+		return remainingRequests == 0 || remainingTokens == 0;
+	}
+	
+	/**
+	 * Parses the durations of the rate limit reset headers, like {@code 20ms}, {@code 1s} or {@code 6m0s}.
+	 *
+	 * @return the duration in nanoseconds, or -1 if it is missing or malformed
+	 */
+	public static long parseDuration(String value) {
+		if (value == null) {
+			return -1;
+		}
+		String trimmed = value.trim();
+		Matcher matcher = DURATION_PART.matcher(trimmed);
+		double nanos = 0;
+		int end = 0;
+		while (matcher.find() && matcher.start() == end) {
+			double amount = Double.parseDouble(matcher.group(1));
+			switch (matcher.group(2)) {
+				case "h":
+					nanos += amount * TimeUnit.HOURS.toNanos(1);
+					break;
+				case "m":
+					nanos += amount * TimeUnit.MINUTES.toNanos(1);
+					break;
+				case "s":
+					nanos += amount * TimeUnit.SECONDS.toNanos(1);
+					break;
+				default:
+					nanos += amount * TimeUnit.MILLISECONDS.toNanos(1);
+			}
+			end = matcher.end();
+		}
+		return end > 0 && end == trimmed.length() ? (long) nanos : -1;
+	}
+	
+	private static long parseLong(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "RateLimitHeaders(remainingRequests=" + remainingRequests + "/" + limitRequests
+				+ ", remainingTokens=" + remainingTokens + "/" + limitTokens + ", processingMillis=" + processingMillis + ")";
+	}
+	
+}
@@ -0,0 +1,56 @@
+package com.theokanning.openai.metrics;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+
+/**
+ * Reads the current usage of an OkHttp connection pool and dispatcher.
+ * Each method returns a live value, so these can be registered as gauges.
+ */
+public class TransportGauges {
+	
+	private final ConnectionPool connectionPool;
+	
+	private final Dispatcher dispatcher;
+	
+	public TransportGauges(ConnectionPool connectionPool, Dispatcher dispatcher) {
+		this.connectionPool = connectionPool;
+		this.dispatcher = dispatcher;
+	}
+	
+	/**
+	 * Open connections in the pool, in use or idle.
+	 */
+	public int getConnectionCount() {
+		return connectionPool.connectionCount();
+	}
+	
+	public int getIdleConnectionCount() {
+		return connectionPool.idleConnectionCount();
+	}
+	
+	/**
+	 * Calls currently executing, including synchronous ones.
+	 */
+	public int getRunningCalls() {
+		return dispatcher.runningCallsCount();
+	}
+	
+	/**
+	 * Calls waiting for a slot under the dispatcher's {@code maxRequests} and {@code maxRequestsPerHost} limits.
+	 */
+	public int getQueuedCalls() {
+		return dispatcher.queuedCallsCount();
+	}
+	
+	public int getMaxRequests() {
+		return dispatcher.getMaxRequests();
+	}
+	
+	@Override
+	public String toString() {
+		return "TransportGauges(connections=" + getConnectionCount() + ", idle=" + getIdleConnectionCount()
+				+ ", running=" + getRunningCalls() + ", queued=" + getQueuedCalls() + ")";
+	}
+	
+}
@@ -0,0 +1,188 @@
+package com.theokanning.openai.search;
+
+import com.theokanning.openai.OpenAiService;
+import com.theokanning.openai.tokenizer.TokenLimits;
+import com.theokanning.openai.tokenizer.Tokenizer;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Searches document lists of any size by splitting them into shards that each fit in one search request.
+ * <p>
+ * Shards hold at most {@link #MAX_SHARD_SIZE} documents. The api limits the tokens of each document, not of the request,
+ * so shards are only capped by document tokens if {@code maxShardTokens} is given, as a cap on the cost of one request.
+ * They are searched in parallel, and the results are merged into a global top k with a bounded heap,
+ * with {@link SearchResult#getDocument()} mapped back to the position in the original list.
+ * <p>
+ * The documents of each shard are checked against the per-document token limit before it is sent, see
+ * {@link TokenLimits#checkSearch(SearchRequest)}, so a document that is too long fails the search without a request.
+ */
+public class ShardedSearch {
+	
+	/**
+	 * The most documents the api accepts in one request.
+	 */
+	public static final int MAX_SHARD_SIZE = 200;
+	
+	private static final Comparator<SearchResult> RANKING = Comparator.comparing(SearchResult::getScore)
+			.thenComparing(SearchResult::getDocument, Comparator.reverseOrder());
+	
+	private final OpenAiService service;
+	
+	private final int maxShardSize;
+	
+	private final int maxShardTokens;
+	
+	private final int concurrency;
+	
+	/**
+	 * Splits into shards of up to {@link #MAX_SHARD_SIZE} documents, whatever their tokens, and searches up to 4 of them at a time.
+	 */
+	public ShardedSearch(OpenAiService service) {
+		this(service, MAX_SHARD_SIZE, Integer.MAX_VALUE, 4);
+	}
+	
+	/**
+	 * @param service        the service used to search each shard
+	 * @param maxShardSize   the most documents in a shard, at most {@link #MAX_SHARD_SIZE}
+	 * @param maxShardTokens the most document tokens in a shard, a document longer than this gets a shard of its own.
+	 *                       {@link Integer#MAX_VALUE} only limits the number of documents, without counting tokens
+	 * @param concurrency    the most shards searched at the same time
+	 */
+	public ShardedSearch(OpenAiService service, int maxShardSize, int maxShardTokens, int concurrency) {
+		if (maxShardSize < 1 || maxShardSize > MAX_SHARD_SIZE) {
+			throw new IllegalArgumentException("maxShardSize must be between 1 and " + MAX_SHARD_SIZE + ": " + maxShardSize);
+		}
+		if (maxShardTokens < 1) {
+			throw new IllegalArgumentException("maxShardTokens must be at least 1: " + maxShardTokens);
+		}
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+		}
+		this.service = service;
+		this.maxShardSize = maxShardSize;
+		this.maxShardTokens = maxShardTokens;
+		this.concurrency = concurrency;
+	}
+	
+	/**
+	 * Searches all documents of the request, which may hold more than {@link #MAX_SHARD_SIZE}.
+	 *
+	 * @param topK the most results returned
+	 * @return the best results over all shards, highest score first
+	 */
+	public List<SearchResult> search(String engineId, SearchRequest request, int topK) {
+		return searchRx(engineId, request, topK).blockingGet();
+	}
+	
+	/**
+	 * @see #search(String, SearchRequest, int)
+	 */
+	public Single<List<SearchResult>> searchRx(String engineId, SearchRequest request, int topK) {
+		return searchPartial(engineId, request, topK).last(Collections.emptyList());
+	}
+	
+	/**
+	 * Cancelling the future cancels the shard searches still in flight.
+	 *
+	 * @see #search(String, SearchRequest, int)
+	 */
+	public CompletableFuture<List<SearchResult>> searchAsync(String engineId, SearchRequest request, int topK) {
+		CompletableFuture<List<SearchResult>> future = new CompletableFuture<>();
+		Disposable disposable = searchRx(engineId, request, topK).subscribe(future::complete, future::completeExceptionally);
+		future.whenComplete((result, error) -> {
+			if (future.isCancelled()) {
+				disposable.dispose();
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Emits the top k so far each time a shard finishes, highest score first, so that early results don't wait for the slowest shard.
+	 * The last list emitted is the final result. Fails as soon as any shard fails.
+	 */
+	public Flowable<List<SearchResult>> searchPartial(String engineId, SearchRequest request, int topK) {
+		if (topK < 1) {
+			throw new IllegalArgumentException("topK must be at least 1: " + topK);
+		}
+		if (request.getFile() != null || request.getDocuments() == null) {
+			throw new IllegalArgumentException("Only requests with a list of documents can be sharded");
+		}
+		List<String> documents = request.getDocuments();
+		return Flowable.defer(() -> {
+			PriorityQueue<SearchResult> heap = new PriorityQueue<>(topK + 1, RANKING);
+			return Flowable.fromIterable(shards(documents))
+					.flatMapSingle(shard -> Single.defer(() -> {
+						SearchRequest shardRequest = SearchRequest.builder()
+								.engineId(request.getEngineId())
+								.query(request.getQuery())
+								.documents(documents.subList(shard[0], shard[1]))
+								.build();
+						TokenLimits.checkSearch(shardRequest);
+						return service.searchRx(engineId, shardRequest);
+					}).map(results -> remap(results, shard[0])), false, concurrency)
+					.map(results -> merge(heap, results, topK));
+		});
+	}
+	
+	/**
+	 * Splits the documents into consecutive ranges, so that a result is mapped back by adding the start of its shard.
+	 */
+	private List<int[]> shards(List<String> documents) {
+		List<int[]> shards = new ArrayList<>();
+		int start = 0;
+		int tokens = 0;
+		for (int i = 0; i < documents.size(); i++) {
+			int documentTokens = maxShardTokens == Integer.MAX_VALUE ? 0 : Tokenizer.gpt3().countTokens(documents.get(i));
+			if (i > start && (i - start == maxShardSize || tokens + documentTokens > maxShardTokens)) {
+				shards.add(new int[]{start, i});
+				start = i;
+				tokens = 0;
+			}
+			tokens += documentTokens;
+		}
+		if (start < documents.size()) {
+			shards.add(new int[]{start, documents.size()});
+		}
+		return shards;
+	}
+	
+	/**
+	 * Copies the results, since they may be shared with the response cache.
+	 */
+	private static List<SearchResult> remap(List<SearchResult> results, int offset) {
+		List<SearchResult> remapped = new ArrayList<>(results.size());
+		for (SearchResult result : results) {
+			SearchResult copy = new SearchResult();
+			copy.setDocument(result.getDocument() + offset);
+			copy.setObject(result.getObject());
+			copy.setScore(result.getScore());
+			remapped.add(copy);
+		}
+		return remapped;
+	}
+	
+	private static List<SearchResult> merge(PriorityQueue<SearchResult> heap, List<SearchResult> results, int topK) {
+		for (SearchResult result : results) {
+			if (heap.size() < topK) {
+				heap.add(result);
+			} else if (RANKING.compare(result, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(result);
+			}
+		}
+		List<SearchResult> top = new ArrayList<>(heap);
+		top.sort(RANKING.reversed());
+		return top;
+	}
+	
+}
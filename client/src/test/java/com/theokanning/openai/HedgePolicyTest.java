@@ -0,0 +1,115 @@
+package com.theokanning.openai;
+
+import com.theokanning.openai.metrics.MetricsRecorder;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HedgePolicyTest {
+	
+	private final TestScheduler scheduler = new TestScheduler();
+	
+	private final HedgePolicy policy = HedgePolicy.builder().initialDelay(Duration.ofMillis(100)).build();
+	
+	/**
+	 * The response of each subscription to the call, the original first.
+	 */
+	private final List<SingleSubject<String>> attempts = new ArrayList<>();
+	
+	private final Single<String> call = Single.defer(() -> {
+		SingleSubject<String> attempt = SingleSubject.create();
+		attempts.add(attempt);
+		return attempt;
+	});
+	
+	@Before
+	public void useTestScheduler() {
+		RxJavaPlugins.setComputationSchedulerHandler(ignored -> scheduler);
+	}
+	
+	@After
+	public void resetScheduler() {
+		RxJavaPlugins.reset();
+	}
+	
+	@Test
+	public void hedgeSucceedsAfterOriginalFails() {
+		TestObserver<String> observer = hedged().test();
+		scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+		assertEquals(2, attempts.size());
+		
+		attempts.get(0).onError(new IllegalStateException("original"));
+		observer.assertNotTerminated();
+		attempts.get(1).onSuccess("hedge");
+		
+		observer.assertResult("hedge");
+		assertEquals(1, policy.getHedgeWins());
+	}
+	
+	@Test
+	public void originalFailingBeforeDelaySendsNoHedge() {
+		IllegalStateException error = new IllegalStateException("original");
+		TestObserver<String> observer = hedged().test();
+		
+		attempts.get(0).onError(error);
+		observer.assertError(error);
+		scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+		
+		assertEquals(1, attempts.size());
+		assertEquals(0, policy.getHedges());
+	}
+	
+	@Test
+	public void bothFailingFailsWithOriginalError() {
+		IllegalStateException error = new IllegalStateException("original");
+		TestObserver<String> observer = hedged().test();
+		scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+		
+		attempts.get(1).onError(new IllegalStateException("hedge"));
+		observer.assertNotTerminated();
+		attempts.get(0).onError(error);
+		
+		observer.assertError(error);
+	}
+	
+	@Test
+	public void firstSuccessCancelsOtherCall() {
+		TestObserver<String> observer = hedged().test();
+		scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+		
+		attempts.get(0).onSuccess("original");
+		
+		observer.assertResult("original");
+		assertFalse(attempts.get(1).hasObservers());
+	}
+	
+	@Test
+	public void delayFollowsLatenciesOnceEnoughAreSeen() {
+		HedgePolicy policy = HedgePolicy.builder().initialDelay(Duration.ofMinutes(1)).minSamples(2).build();
+		Single<String> fast = policy.apply(Endpoint.GET_ENGINE, Single.just("fast"), MetricsRecorder.NONE);
+		
+		fast.test().assertResult("fast");
+		assertEquals(Duration.ofMinutes(1), policy.getDelay(Endpoint.GET_ENGINE));
+		fast.test().assertResult("fast");
+		assertTrue(policy.getDelay(Endpoint.GET_ENGINE).compareTo(Duration.ofMinutes(1)) < 0);
+	}
+	
+	private Single<String> hedged() {
+		return policy.apply(Endpoint.GET_ENGINE, call, MetricsRecorder.NONE);
+	}
+	
+}
@@ -0,0 +1,75 @@
+package com.theokanning.openai;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+	
+	private final SingleFlight singleFlight = new SingleFlight(null);
+	
+	private final AtomicInteger subscriptions = new AtomicInteger();
+	
+	private final SingleSubject<String> response = SingleSubject.create();
+	
+	private final Single<String> call = response.doOnSubscribe(disposable -> subscriptions.incrementAndGet());
+	
+	@Test
+	public void callersInFlightShareOneCall() {
+		Single<String> flight = singleFlight.share("key", call);
+		TestObserver<String> first = flight.test();
+		TestObserver<String> second = flight.test();
+		
+		response.onSuccess("result");
+		
+		first.assertResult("result");
+		second.assertResult("result");
+		assertEquals(1, subscriptions.get());
+	}
+	
+	/**
+	 * A caller that got the flight before it finished, but subscribes after, must not send the call again.
+	 */
+	@Test
+	public void lateSubscriberGetsReplayedResult() {
+		Single<String> flight = singleFlight.share("key", call);
+		TestObserver<String> first = flight.test();
+		response.onSuccess("result");
+		first.assertResult("result");
+		
+		flight.test().assertResult("result");
+		assertEquals(1, subscriptions.get());
+	}
+	
+	@Test
+	public void lateSubscriberGetsReplayedError() {
+		IllegalStateException error = new IllegalStateException("failed");
+		Single<String> flight = singleFlight.share("key", call);
+		TestObserver<String> first = flight.test();
+		response.onError(error);
+		first.assertError(error);
+		
+		flight.test().assertError(error);
+		assertEquals(1, subscriptions.get());
+	}
+	
+	@Test
+	public void callIsCancelledOnceEveryCallerDisposed() {
+		Single<String> flight = singleFlight.share("key", call);
+		TestObserver<String> first = flight.test();
+		TestObserver<String> second = flight.test();
+		
+		first.dispose();
+		assertTrue(response.hasObservers());
+		second.dispose();
+		assertFalse(response.hasObservers());
+	}
+	
+}
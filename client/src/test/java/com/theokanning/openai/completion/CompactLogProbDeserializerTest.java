@@ -0,0 +1,57 @@
+package com.theokanning.openai.completion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.OpenAiService;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompactLogProbDeserializerTest {
+	
+	private final ObjectMapper mapper = OpenAiService.defaultObjectMapper().registerModule(CompactLogProbDeserializer.module());
+	
+	/**
+	 * Log probabilities in the forms the api sends them, and longer ones that take the fallback, must parse to the same
+	 * double as {@link Double#parseDouble}, bit for bit.
+	 */
+	@Test
+	public void readsDoublesLikeParseDouble() throws Exception {
+		List<String> corpus = new ArrayList<>(Arrays.asList(
+				"-0.31477404", "-1.1920929e-07", "-3.0517578E-5", "0.0", "-0.0", "-20.035614", "1e22", "-9.999999999999999e-23",
+				"0.1", "-123456789012345678", "4.9e-324", "-1.7976931348623157e308"
+		));
+		Random random = new Random(42);
+		for (int i = 0; i < 20_000; i++) {
+			double logprob = -Math.exp(random.nextDouble() * 40 - 30);
+			corpus.add(Float.toString((float) logprob));
+			corpus.add(String.format(Locale.ROOT, "%.8f", logprob));
+			corpus.add(String.format(Locale.ROOT, "%.7e", logprob));
+			corpus.add(Double.toString(logprob));
+		}
+		CompactLogProbResult result = (CompactLogProbResult) mapper.readValue(
+				"{\"token_logprobs\":[" + String.join(",", corpus) + "]}", LogProbResult.class);
+		
+		assertEquals(corpus.size(), result.size());
+		for (int i = 0; i < corpus.size(); i++) {
+			assertEquals(corpus.get(i), Double.doubleToLongBits(Double.parseDouble(corpus.get(i))), Double.doubleToLongBits(result.logprobAt(i)));
+		}
+	}
+	
+	@Test
+	public void setListsReplaceCompactValues() throws Exception {
+		LogProbResult result = mapper.readValue("{\"tokens\":[\"a\",\"b\"],\"token_logprobs\":[null,-0.5]}", LogProbResult.class);
+		mapper.readerForUpdating(result).readValue("{\"token_logprobs\":[-1.0,-2.0]}");
+		
+		CompactLogProbResult compact = (CompactLogProbResult) result;
+		assertEquals(Arrays.asList("a", "b"), compact.getTokens());
+		assertEquals(Arrays.asList(-1.0, -2.0), compact.getTokenLogprobs());
+		assertEquals(-3.0, compact.sumLogprobs(), 0);
+	}
+	
+}